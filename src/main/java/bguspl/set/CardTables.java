@@ -0,0 +1,113 @@
+package bguspl.set;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The read-only lookup tables of a deck, precomputed once per deck shape (feature size and count) and shared by all
+ * the game instances in the JVM that use the same deck shape.
+ */
+final class CardTables {
+
+    /**
+     * The largest number of features completed together by one lookup in the pair completion table.
+     */
+    private static final int MAX_CHUNK_FEATURES = 6;
+
+    /**
+     * The tables of each deck shape, keyed by featureSize * 2^32 + featureCount.
+     */
+    private static final Map<Long, CardTables> SHARED = new ConcurrentHashMap<>();
+
+    final int featureSize;
+    final int featureCount;
+    final int deckSize;
+
+    /**
+     * The features of all cards: the i-th feature of a card is features[card * featureCount + i] (unsigned).
+     * Empty if feature values do not fit in a byte.
+     */
+    final byte[] features;
+
+    /**
+     * For each feature, the value it adds to the card id per unit (i.e. featureSize ^ (featureCount - 1 - i)).
+     */
+    final int[] weights;
+
+    /**
+     * The number of bits used for each feature value in a packed card word.
+     */
+    final int featureBits;
+
+    /**
+     * For each card, its features packed in a word (feature i is stored in bits [i * featureBits, (i + 1) * featureBits)).
+     * Empty if the values of a feature do not fit in a 64-bit mask.
+     */
+    final long[] packed;
+
+    /**
+     * Card ids are split into chunks of features (i.e. base 3 digits) that are completed independently: completion[a *
+     * chunkSize + b] is the chunk that completes chunks a and b to a legal set (null unless featureSize == 3).
+     * Small decks are a single chunk, so completing a pair is a single lookup.
+     */
+    final int[] completion;
+    final int chunkSize;
+    final int chunks;
+
+    private CardTables(int featureSize, int featureCount) {
+        this.featureSize = featureSize;
+        this.featureCount = featureCount;
+        this.deckSize = (int) Math.pow(featureSize, featureCount);
+
+        weights = new int[featureCount];
+        for (int i = featureCount - 1, weight = 1; i >= 0; --i, weight *= featureSize)
+            weights[i] = weight;
+
+        features = new byte[featureSize <= 1 << Byte.SIZE ? deckSize * featureCount : 0];
+        for (int card = 0, i = 0; i < features.length; ++card)
+            for (int feature = 0; feature < featureCount; ++feature, ++i)
+                features[i] = (byte) (card / weights[feature] % featureSize);
+
+        featureBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(featureSize - 1));
+        packed = new long[featureSize < Long.SIZE ? deckSize : 0];
+        for (int card = 0; card < packed.length; ++card)
+            for (int i = 0; i < featureCount; ++i)
+                packed[card] |= (long) (card / weights[i] % featureSize) << (i * featureBits);
+
+        chunks = (featureCount + MAX_CHUNK_FEATURES - 1) / MAX_CHUNK_FEATURES;
+        int chunkFeatures = (featureCount + chunks - 1) / Math.max(1, chunks);
+        chunkSize = (int) Math.pow(3, chunkFeatures);
+        if (featureSize == 3) {
+            completion = new int[chunkSize * chunkSize];
+            for (int a = 0; a < chunkSize; ++a)
+                for (int b = 0; b < chunkSize; ++b)
+                    completion[a * chunkSize + b] = computeCompletion(a, b, chunkFeatures);
+        } else completion = null;
+    }
+
+    /**
+     * Returns the shared tables of a deck shape, building them on first use.
+     *
+     * @param featureSize  - the number of values of each feature.
+     * @param featureCount - the number of features on each card.
+     * @return - the tables of the deck shape.
+     */
+    static CardTables of(int featureSize, int featureCount) {
+        return SHARED.computeIfAbsent(((long) featureSize << Integer.SIZE) + featureCount,
+                key -> new CardTables(featureSize, featureCount));
+    }
+
+    /**
+     * Computes the value that completes two values of the given number of features to a legal set, feature by feature:
+     * equal features stay the same and different features take the third value (i.e. -(a + b) mod 3).
+     */
+    private static int computeCompletion(int a, int b, int features) {
+        int third = 0;
+        for (int i = 0, weight = 1; i < features; ++i, weight *= 3) {
+            third += (6 - a % 3 - b % 3) % 3 * weight;
+            a /= 3;
+            b /= 3;
+        }
+        return third;
+    }
+}
@@ -0,0 +1,26 @@
+package bguspl.set;
+
+/**
+ * The strategies that can be configured for the computer players (see the ComputerStrategy configuration).
+ */
+public enum ComputerStrategy {
+    /**
+     * Presses uniformly random slots (see RandomStrategy).
+     */
+    RANDOM,
+    /**
+     * Looks for the sets on the table (see SetAwareStrategy).
+     */
+    SET_AWARE;
+
+    /**
+     * @param name - the strategy's name in the configuration (e.g. SetAware).
+     * @return - the strategy.
+     */
+    public static ComputerStrategy parse(String name) {
+        for (ComputerStrategy strategy : values())
+            if (strategy.name().replace("_", "").equalsIgnoreCase(name.trim()))
+                return strategy;
+        throw new IllegalArgumentException("unknown computer player strategy: " + name);
+    }
+}
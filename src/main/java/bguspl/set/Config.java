@@ -21,6 +21,21 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * The seed of the game's random sources (a random one if not configured, logged so the game can be reproduced)
+     */
+    public final long seed;
+
+    /**
+     * The file the game's binary event log is written to (empty if the events should not be logged)
+     */
+    public final String eventLogFile;
+
+    /**
+     * True iff the dealer and players should run on virtual threads (needs Java 21+, otherwise platform threads are used)
+     */
+    public final boolean virtualThreads;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -36,6 +51,11 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The minimal number of cards for which enumerating all their sets is done in parallel (on the common fork/join pool)
+     */
+    public final int parallelFindSetsThreshold;
+
     /**
      * The number of human players in the game.
      */
@@ -51,11 +71,37 @@ public class Config {
      */
     public final int players;
 
+    /**
+     * The strategy of the computer players (Random, or SetAware: looks for the sets on the table)
+     */
+    public final ComputerStrategy computerStrategy;
+
+    /**
+     * The probability a SetAware computer player targets a legal set (rather than three random cards)
+     */
+    public final double computerSkill;
+
+    /**
+     * The mean and the minimal number of milliseconds a SetAware computer player takes to press a key
+     */
+    public final long computerReactionMillis;
+    public final long computerMinReactionMillis;
+
     /**
      * Whether to print out hints to the console or not
      */
     public final boolean hints;
 
+    /**
+     * The maximal number of key presses pending for a player
+     */
+    public final int keyPressBufferSize;
+
+    /**
+     * What to do with a key press when the player has too many pending ones (DropOldest, DropNewest or Coalesce)
+     */
+    public final KeyPressOverflow keyPressOverflow;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -155,7 +201,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -192,18 +238,50 @@ public class Config {
         randomSpinMax = Long.parseLong(properties.getProperty("RandomSpinMax", "0"));
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
+        String seedString = properties.getProperty("Seed", "").trim();
+        seed = seedString.isEmpty() ? System.nanoTime() : Long.parseLong(seedString);
+        logger.info("random seed: " + seed);
+        eventLogFile = properties.getProperty("EventLogFile", "").trim();
+        // note: the VirtualThreads system property (set by the java21 build profile) overrides the configuration file
+        virtualThreads = Boolean.parseBoolean(System.getProperty("VirtualThreads", properties.getProperty("VirtualThreads", "False")));
 
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        parallelFindSetsThreshold = Integer.parseInt(properties.getProperty("ParallelFindSetsThreshold", "512"));
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        ComputerStrategy strategy = ComputerStrategy.SET_AWARE;
+        try {
+            strategy = ComputerStrategy.parse(properties.getProperty("ComputerStrategy", "SetAware"));
+        } catch (IllegalArgumentException e) {
+            logger.severe(e.getMessage() + ", using SetAware.");
+        }
+        computerStrategy = strategy;
+        computerSkill = Double.parseDouble(properties.getProperty("ComputerSkill", "0.9"));
+        computerReactionMillis = (long) (Double.parseDouble(properties.getProperty("ComputerReactionSeconds", "0.8")) * 1000.0);
+        computerMinReactionMillis = (long) (Double.parseDouble(properties.getProperty("ComputerMinReactionSeconds", "0.3")) * 1000.0);
+        if (computerMinReactionMillis > computerReactionMillis || computerMinReactionMillis < 0)
+            logger.severe("invalid computer reaction time: mean: " + computerReactionMillis + " min: " + computerMinReactionMillis);
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        int bufferSize = Integer.parseInt(properties.getProperty("KeyPressBufferSize", "3"));
+        if (bufferSize <= 0) {
+            logger.severe("invalid key press buffer size: " + bufferSize + ", using 3.");
+            bufferSize = 3;
+        }
+        keyPressBufferSize = bufferSize;
+        KeyPressOverflow overflow = KeyPressOverflow.COALESCE;
+        try {
+            overflow = KeyPressOverflow.parse(properties.getProperty("KeyPressOverflow", "Coalesce"));
+        } catch (IllegalArgumentException e) {
+            logger.severe(e.getMessage() + ", using Coalesce.");
+        }
+        keyPressOverflow = overflow;
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
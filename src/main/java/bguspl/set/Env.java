@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
 public class Env {
@@ -9,10 +10,37 @@ public class Env {
     public final UserInterface ui;
     public final Util util;
 
+    /**
+     * The executor running the game's threads (dealer, players, hints) as tasks, or null to run each of them on a
+     * dedicated thread.
+     */
+    public final ExecutorService executor;
+
+    /**
+     * The engine metrics collected while the game runs.
+     */
+    public final Metrics metrics;
+
+    /**
+     * The binary log of the game events (which logs nothing unless config.eventLogFile is set).
+     */
+    public final EventLog eventLog;
+
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, null);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, ExecutorService executor) {
+        this(logger, config, ui, util, executor, new Metrics());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, ExecutorService executor, Metrics metrics) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.eventLog = EventLog.open(logger, config);
     }
 }
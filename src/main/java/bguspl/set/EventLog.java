@@ -0,0 +1,363 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A compact binary log of the game events (deals, removals, tokens, claims, verdicts, scores and reshuffles), each
+ * stamped with the nanoseconds since the game started. The events are buffered and written through a file channel; a
+ * logged game can be replayed with Replay.
+ * <p>
+ * Format: a header (magic, format version, seed, feature size, feature count, table size, players), followed by the
+ * events: an event type byte, a long timestamp, and the event's int fields (the slots and cards of a deal, removal or
+ * claim are preceded by their count).
+ * <p>
+ * The table logs deals and removals under the write lock of its cards and token events under the read lock, so the
+ * log is a valid order of the table's changes: every token event refers to the card that was in its slot at that point
+ * of the log.
+ */
+public class EventLog implements Closeable {
+
+    public static final byte DEAL = 1;
+    public static final byte REMOVE = 2;
+    public static final byte TOKEN = 3;
+    public static final byte CLAIM = 4;
+    public static final byte VERDICT = 5;
+    public static final byte SCORE = 6;
+    public static final byte RESHUFFLE = 7;
+
+    private static final int MAGIC = 0x5345544C; // "SETL"
+    private static final int FORMAT_VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Receives the events of a log that is read.
+     */
+    public interface Listener {
+        void header(Header header);
+
+        void deal(long time, int[] cards, int[] slots);
+
+        void remove(long time, int[] slots);
+
+        void token(long time, int player, int slot, boolean placed);
+
+        void claim(long time, int player, int[] slots);
+
+        void verdict(long time, int player, int kind);
+
+        void score(long time, int player, int score);
+
+        void reshuffle(long time);
+    }
+
+    /**
+     * The header of a log.
+     */
+    public static class Header {
+        public final long seed;
+        public final int featureSize;
+        public final int featureCount;
+        public final int tableSize;
+        public final int players;
+
+        private Header(long seed, int featureSize, int featureCount, int tableSize, int players) {
+            this.seed = seed;
+            this.featureSize = featureSize;
+            this.featureCount = featureCount;
+            this.tableSize = tableSize;
+            this.players = players;
+        }
+    }
+
+    private final Logger logger;
+
+    /**
+     * Lock for writing events (a lock rather than a monitor, so writing the file does not pin a virtual thread).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The channel of the log file (null if the events are not logged).
+     */
+    private final FileChannel channel;
+
+    /**
+     * The events that were not written to the channel yet.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The time (System.nanoTime()) the game started.
+     */
+    private final long start;
+
+    private EventLog(Logger logger, FileChannel channel, int tableSize) {
+        this.logger = logger;
+        this.channel = channel;
+        this.buffer = channel == null ? null : ByteBuffer.allocate(Math.max(BUFFER_SIZE, 64 + 8 * Integer.BYTES * tableSize));
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Opens the event log configured by config.eventLogFile (an event log that logs nothing if none is configured, or
+     * if the file cannot be opened).
+     */
+    public static EventLog open(Logger logger, Config config) {
+        if (config.eventLogFile.isEmpty())
+            return new EventLog(logger, null, 0);
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(config.eventLogFile),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            EventLog log = new EventLog(logger, channel, config.tableSize);
+            log.buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(config.seed)
+                    .putInt(config.featureSize).putInt(config.featureCount).putInt(config.tableSize).putInt(config.players);
+            return log;
+        } catch (IOException e) {
+            logger.severe("cannot open event log " + config.eventLogFile + ": " + e);
+            return new EventLog(logger, null, 0);
+        }
+    }
+
+    public void deal(int[] cards, int[] slots) {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            event(DEAL, System.nanoTime(), Integer.BYTES * (1 + 2 * slots.length));
+            buffer.putInt(slots.length);
+            for (int i = 0; i < slots.length; i++)
+                buffer.putInt(slots[i]).putInt(cards[i]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(int[] slots) {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            event(REMOVE, System.nanoTime(), Integer.BYTES * (1 + slots.length));
+            putInts(slots);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void token(int player, int slot, boolean placed) {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            event(TOKEN, System.nanoTime(), 2 * Integer.BYTES + 1);
+            buffer.putInt(player).putInt(slot).put((byte) (placed ? 1 : 0));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param time - the time (System.nanoTime()) the claim was made.
+     */
+    public void claim(int player, int[] slots, long time) {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            event(CLAIM, time, Integer.BYTES * (2 + slots.length));
+            buffer.putInt(player);
+            putInts(slots);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param kind - the ordinal of the verdict's Verdict.Kind.
+     */
+    public void verdict(int player, int kind) {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            event(VERDICT, System.nanoTime(), Integer.BYTES + 1);
+            buffer.putInt(player).put((byte) kind);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void score(int player, int score) {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            event(SCORE, System.nanoTime(), 2 * Integer.BYTES);
+            buffer.putInt(player).putInt(score);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void reshuffle() {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            event(RESHUFFLE, System.nanoTime(), 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the buffered events and closes the log file.
+     */
+    @Override
+    public void close() {
+        if (channel == null) return;
+        lock.lock();
+        try {
+            flush();
+            channel.close();
+        } catch (IOException e) {
+            logger.severe("cannot write event log: " + e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void event(byte type, long time, int size) {
+        if (buffer.remaining() < 1 + Long.BYTES + size) {
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.severe("cannot write event log: " + e);
+                buffer.clear(); // drop the buffered events rather than the game
+            }
+        }
+        buffer.put(type).putLong(time - start);
+    }
+
+    private void putInts(int[] values) {
+        buffer.putInt(values.length);
+        for (int value : values)
+            buffer.putInt(value);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Reads a log, passing its header and then its events to the listener in order.
+     *
+     * @param file     - the log file.
+     * @param listener - the listener receiving the events.
+     * @throws IOException - if the file cannot be read or is not an event log.
+     */
+    public static void read(Path file, Listener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+            in.flip();
+            Reader reader = new Reader(channel, in);
+            if (reader.readInt() != MAGIC || reader.readInt() != FORMAT_VERSION)
+                throw new IOException(file + " is not an event log");
+            listener.header(new Header(reader.readLong(), reader.readInt(), reader.readInt(), reader.readInt(), reader.readInt()));
+            while (reader.hasMore()) {
+                byte type = reader.readByte();
+                long time = reader.readLong();
+                switch (type) {
+                    case DEAL: {
+                        int count = reader.readInt();
+                        int[] cards = new int[count], slots = new int[count];
+                        for (int i = 0; i < count; i++) {
+                            slots[i] = reader.readInt();
+                            cards[i] = reader.readInt();
+                        }
+                        listener.deal(time, cards, slots);
+                        break;
+                    }
+                    case REMOVE:
+                        listener.remove(time, reader.readInts());
+                        break;
+                    case TOKEN:
+                        listener.token(time, reader.readInt(), reader.readInt(), reader.readByte() == 1);
+                        break;
+                    case CLAIM: {
+                        int player = reader.readInt();
+                        listener.claim(time, player, reader.readInts());
+                        break;
+                    }
+                    case VERDICT:
+                        listener.verdict(time, reader.readInt(), reader.readByte());
+                        break;
+                    case SCORE:
+                        listener.score(time, reader.readInt(), reader.readInt());
+                        break;
+                    case RESHUFFLE:
+                        listener.reshuffle(time);
+                        break;
+                    default:
+                        throw new IOException("unknown event type " + type + " in " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads primitive values from a file channel through a buffer.
+     */
+    private static class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer in;
+
+        Reader(FileChannel channel, ByteBuffer in) {
+            this.channel = channel;
+            this.in = in;
+        }
+
+        boolean hasMore() throws IOException {
+            return in.hasRemaining() || fill(1);
+        }
+
+        byte readByte() throws IOException {
+            require(1);
+            return in.get();
+        }
+
+        int readInt() throws IOException {
+            require(Integer.BYTES);
+            return in.getInt();
+        }
+
+        long readLong() throws IOException {
+            require(Long.BYTES);
+            return in.getLong();
+        }
+
+        int[] readInts() throws IOException {
+            int[] values = new int[readInt()];
+            for (int i = 0; i < values.length; i++)
+                values[i] = readInt();
+            return values;
+        }
+
+        private void require(int bytes) throws IOException {
+            if (in.remaining() < bytes && !fill(bytes))
+                throw new IOException("truncated event log");
+        }
+
+        private boolean fill(int bytes) throws IOException {
+            in.compact();
+            while (in.position() < bytes)
+                if (channel.read(in) < 0) break;
+            in.flip();
+            return in.remaining() >= bytes;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A fork/join task that enumerates all the sets among an array of cards by pair completion. The range of the outer
+ * pair index is split recursively into ranges of about the same number of pairs, and the results of the subtasks are
+ * concatenated in order, so the sets are found in the same order as the sequential search.
+ */
+class FindSetsTask extends RecursiveTask<List<int[]>> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of pairs below which a task is not split any further.
+     */
+    static final long LEAF_PAIRS = 1 << 14;
+
+    private final transient Util util; // tasks are never serialized
+    private final int[] cards;
+    private final int len;
+    private final int[] position;
+    private final int from;
+    private final int to;
+
+    /**
+     * @param util     - the util used to complete pairs of cards.
+     * @param cards    - the cards to search in.
+     * @param len      - the number of cards to search in (starting from index 0).
+     * @param position - the position of each card in the cards array (-1 if absent), shared read-only by all tasks.
+     * @param from     - the first outer pair index of this task (inclusive).
+     * @param to       - the last outer pair index of this task (exclusive).
+     */
+    FindSetsTask(Util util, int[] cards, int len, int[] position, int from, int to) {
+        this.util = util;
+        this.cards = cards;
+        this.len = len;
+        this.position = position;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return - the number of pairs (i, j) with from <= i < to and i < j < len.
+     */
+    private long pairs(int from, int to) {
+        return ((long) (len - 1 - from) + (len - to)) * (to - from) / 2;
+    }
+
+    @Override
+    protected List<int[]> compute() {
+        long total = pairs(from, to);
+        if (total <= LEAF_PAIRS || to - from < 2)
+            return search();
+
+        // split where half of the pairs are on each side (the first outer indices have more pairs)
+        int mid = from + 1;
+        while (mid < to - 1 && pairs(from, mid) < total / 2) ++mid;
+        FindSetsTask left = new FindSetsTask(util, cards, len, position, from, mid);
+        FindSetsTask right = new FindSetsTask(util, cards, len, position, mid, to);
+        right.fork();
+        List<int[]> sets = left.compute();
+        sets.addAll(right.join());
+        return sets;
+    }
+
+    private List<int[]> search() {
+        List<int[]> sets = new ArrayList<>();
+        for (int i = from; i < to; ++i)
+            for (int j = i + 1; j < len - 1; ++j) {
+                int third = util.completeSet(cards[i], cards[j]);
+                if (position[third] > j) {
+                    int[] set = {cards[i], cards[j], third};
+                    Arrays.sort(set);
+                    sets.add(set);
+                }
+            }
+        return sets;
+    }
+}
@@ -0,0 +1,211 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games in one JVM. The dealers, players and hint services of all the games run as tasks on a
+ * shared executor.
+ * On a bounded pool of platform threads, the tasks of a game block (waiting for the dealer, freezing) and hold their
+ * threads for the whole game, so a game is admitted only when the pool has a thread for each of its tasks: the pool
+ * then acts as an admission queue, running maxThreads / (1 + players) games at a time and queueing the others.
+ * On an executor that starts a thread per task (virtual threads), a blocked task does not hold a scarce thread, so all
+ * the submitted games run at once and there is no admission.
+ */
+public class GameServer {
+
+    private final Logger logger;
+
+    /**
+     * The configuration properties shared by all the games (each game may override some of them).
+     */
+    private final Properties defaults;
+
+    /**
+     * The executor running the tasks of all the games.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The pool threads not reserved by an admitted game (null if the executor starts a thread per task).
+     */
+    private final Semaphore freeThreads;
+
+    private final int maxThreads;
+
+    /**
+     * Creates a game server on a bounded pool of platform threads.
+     *
+     * @param logger     - the logger shared by all the games.
+     * @param defaults   - the configuration properties shared by all the games.
+     * @param maxThreads - the maximum number of threads running the games.
+     */
+    public GameServer(Logger logger, Properties defaults, int maxThreads) {
+        this.logger = logger;
+        this.defaults = defaults;
+        this.maxThreads = maxThreads;
+        this.freeThreads = new Semaphore(maxThreads, true);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> new Thread(task, "game-worker-" + threadCount.getAndIncrement()));
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * Creates a game server on an executor that starts a thread per task (e.g. a virtual thread per task executor), so
+     * games are not admitted by the number of threads.
+     *
+     * @param logger   - the logger shared by all the games.
+     * @param defaults - the configuration properties shared by all the games.
+     * @param executor - the executor running the tasks of all the games (shut down by shutdown).
+     */
+    public GameServer(Logger logger, Properties defaults, ExecutorService executor) {
+        this.logger = logger;
+        this.defaults = defaults;
+        this.maxThreads = Integer.MAX_VALUE;
+        this.freeThreads = null;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a game server on virtual threads if the configuration asks for them (config.virtualThreads) and the
+     * runtime has them, otherwise on a bounded pool of platform threads.
+     *
+     * @param logger     - the logger shared by all the games.
+     * @param defaults   - the configuration properties shared by all the games.
+     * @param maxThreads - the maximum number of platform threads running the games (unused on virtual threads).
+     * @return - the game server.
+     */
+    public static GameServer create(Logger logger, Properties defaults, int maxThreads) {
+        if (new Config(logger, defaults).virtualThreads) {
+            ExecutorService executor = VirtualThreads.newExecutor();
+            if (executor != null) return new GameServer(logger, defaults, executor);
+            logger.severe("virtual threads require Java 21 or later, using platform threads");
+        }
+        return new GameServer(logger, defaults, maxThreads);
+    }
+
+    /**
+     * Starts a game, waiting (on a bounded pool) until the pool has enough free threads for it.
+     *
+     * @param overrides - the configuration properties of this game that override the shared ones.
+     * @return - the future scores of the game's players.
+     * @throws InterruptedException - if interrupted while waiting for free threads.
+     */
+    public Future<int[]> submit(Properties overrides) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.putAll(defaults);
+        properties.putAll(overrides);
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceHeadless(), util, executor);
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+
+        if (freeThreads == null)
+            return executor.submit(() -> {
+                dealer.run();
+                return Arrays.stream(players).mapToInt(Player::score).toArray();
+            });
+
+        int threads = 1 + players.length + (config.hints ? 1 : 0);
+        if (threads > maxThreads)
+            throw new IllegalArgumentException("a game needs " + threads + " threads, the server has " + maxThreads);
+        freeThreads.acquire(threads);
+        try {
+            return executor.submit(() -> {
+                try {
+                    dealer.run();
+                    return Arrays.stream(players).mapToInt(Player::score).toArray();
+                } finally {
+                    freeThreads.release(threads);
+                }
+            });
+        } catch (RuntimeException e) {
+            freeThreads.release(threads);
+            throw e;
+        }
+    }
+
+    /**
+     * @return - the largest number of threads that have simultaneously been in the pool (-1 if the executor starts a
+     * thread per task).
+     */
+    public int largestPoolSize() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getLargestPoolSize() : -1;
+    }
+
+    /**
+     * Stops accepting games, and waits for the running games to finish.
+     */
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            logger.info("waiting for the games to finish.");
+    }
+
+    /**
+     * Runs many computer-player games on a shared pool and prints a summary.
+     *
+     * @param args - optional number of games (default 100), maximum number of platform threads (default 64, unused on
+     *             virtual threads) and configuration file (default config.properties).
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        String configFile = args.length > 2 ? args[2] : "config.properties";
+
+        Logger logger = Main.initLogger();
+        ThreadLogger.logStart(logger, Thread.currentThread().getName());
+        GameServer server = create(logger, Config.loadProperties(configFile, logger), maxThreads);
+
+        long start = System.nanoTime();
+        List<Future<int[]>> results = new ArrayList<>(games);
+        for (int game = 0; game < games; game++) {
+            Properties overrides = new Properties();
+            overrides.setProperty("HumanPlayers", "0");
+            overrides.setProperty("EndGamePauseSeconds", "0");
+            overrides.setProperty("EventLogFile", "");
+            results.add(server.submit(overrides));
+        }
+
+        long points = 0;
+        int failed = 0;
+        for (Future<int[]> result : results) {
+            try {
+                points += Arrays.stream(result.get()).sum();
+            } catch (ExecutionException e) {
+                logger.severe("game failed: " + e.getCause());
+                failed++;
+            }
+        }
+        server.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("games: %d (failed: %d), points: %d, time: %.2fs, threads: %d%n",
+                games, failed, points, seconds, server.largestPoolSize());
+        ThreadLogger.logStop(logger, Thread.currentThread().getName());
+        for (Handler h : logger.getHandlers()) h.flush();
+    }
+}
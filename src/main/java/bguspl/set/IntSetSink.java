@@ -0,0 +1,16 @@
+package bguspl.set;
+
+/**
+ * A consumer of the sets found by the primitive Util search methods.
+ */
+@FunctionalInterface
+public interface IntSetSink {
+
+    /**
+     * Accepts a legal set found by the search.
+     *
+     * @param set - the sorted card ids of the set. Note: the array is reused by the search, copy it to keep it.
+     * @return - true iff the search should continue looking for more sets.
+     */
+    boolean accept(int[] set);
+}
@@ -0,0 +1,31 @@
+package bguspl.set;
+
+/**
+ * What to do with a key press when the player has too many pending ones (see the KeyPressOverflow configuration).
+ */
+public enum KeyPressOverflow {
+    /**
+     * Drop the oldest pending press to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * Drop the new press.
+     */
+    DROP_NEWEST,
+    /**
+     * If a press of the same slot is pending, the two presses toggle the same token, so drop both. Otherwise, drop
+     * the new press.
+     */
+    COALESCE;
+
+    /**
+     * @param name - the policy's name in the configuration (e.g. DropOldest).
+     * @return - the policy.
+     */
+    public static KeyPressOverflow parse(String name) {
+        for (KeyPressOverflow overflow : values())
+            if (overflow.name().replace("_", "").equalsIgnoreCase(name.trim()))
+                return overflow;
+        throw new IllegalArgumentException("unknown key press overflow policy: " + name);
+    }
+}
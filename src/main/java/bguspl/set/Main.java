@@ -10,6 +10,9 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.*;
 
 /**
@@ -57,7 +60,12 @@ public class Main {
         }
         ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        ExecutorService executor = null;
+        if (config.virtualThreads) {
+            executor = VirtualThreads.newExecutor();
+            if (executor == null) logger.severe("virtual threads require Java 21 or later, using platform threads");
+        }
+        Env env = new Env(logger, config, ui, util, executor);
 
         // create the game entities
         Table table = new Table(env);
@@ -65,13 +73,26 @@ public class Main {
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
-        // start the dealer thread
+        // start the dealer thread (as a task on the virtual thread executor, if there is one)
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
+        Future<?> dealerTask = null;
+        if (executor == null) dealerThread.startWithLog();
+        else {
+            ThreadLogger.logStart(logger, "dealer");
+            dealerTask = executor.submit(dealer);
+        }
 
         try {
             // shutdown stuff
-            dealerThread.joinWithLog();
+            if (executor == null) dealerThread.joinWithLog();
+            else try {
+                dealerTask.get();
+            } catch (ExecutionException e) {
+                logger.severe("thread dealer failed: " + e.getCause());
+            } finally {
+                ThreadLogger.logStop(logger, "dealer");
+                executor.shutdown();
+            }
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
@@ -83,7 +104,7 @@ public class Main {
         }
     }
 
-    private static Logger initLogger() {
+    static Logger initLogger() {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
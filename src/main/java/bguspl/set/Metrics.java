@@ -0,0 +1,115 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Engine metrics collected while games run: the verification latency of the claims (from the claim to the dealer's
+ * verdict) and the time spent waiting for the table lock.
+ * The latencies are counted in a fixed histogram, so recording one takes constant time and memory and never blocks.
+ * Each power of two is split into SUB_BUCKETS buckets, so a percentile is accurate to within 1 / SUB_BUCKETS of its
+ * value.
+ */
+public class Metrics {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of verifications in each latency bucket (see bucket).
+     */
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+    private final LongAdder latencyCount = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * The total time (in nanoseconds) and the number of times threads waited for the table lock.
+     */
+    private final LongAdder lockWaitNanos = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+
+    /**
+     * Records the verification latency of a claim.
+     *
+     * @param nanos - the time from the claim to the verdict, in nanoseconds.
+     */
+    public void verification(long nanos) {
+        nanos = Math.max(0, nanos);
+        latencyBuckets.incrementAndGet(bucket(nanos));
+        latencyCount.increment();
+        maxLatency.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Records the time a thread waited for the table lock.
+     *
+     * @param nanos - the waiting time, in nanoseconds.
+     */
+    public void lockWait(long nanos) {
+        lockWaitNanos.add(nanos);
+        lockWaits.increment();
+    }
+
+    /**
+     * @return - the number of verifications recorded.
+     */
+    public long verifications() {
+        return latencyCount.sum();
+    }
+
+    /**
+     * @param percentile - the percentile (between 0 and 100).
+     * @return - the verification latency at the given percentile, in nanoseconds (the upper bound of its histogram
+     *           bucket, and at most the maximal latency; 0 if none were recorded).
+     */
+    public long verificationPercentile(double percentile) {
+        long count = 0;
+        for (int i = 0; i < latencyBuckets.length(); i++)
+            count += latencyBuckets.get(i);
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long max = maxLatency.get();
+        for (int i = 0; i < latencyBuckets.length(); i++) {
+            rank -= latencyBuckets.get(i);
+            if (rank <= 0) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * @return - the total time threads waited for the table lock, in nanoseconds.
+     */
+    public long lockWaitNanos() {
+        return lockWaitNanos.sum();
+    }
+
+    /**
+     * @return - the number of times threads waited for the table lock.
+     */
+    public long lockWaits() {
+        return lockWaits.sum();
+    }
+
+    /**
+     * @param nanos - a non-negative latency.
+     * @return - the histogram bucket of the latency: the latencies below SUB_BUCKETS have a bucket each, and every
+     *           higher power of two is split into SUB_BUCKETS equal buckets.
+     */
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return - the largest latency in a histogram bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,185 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import bguspl.set.ex.Verdict;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Replays a game from its binary event log (see EventLog) by feeding the logged deals, removals and tokens back into a
+ * table, either as fast as possible or at the pace they were logged.
+ * This is a table-only replay: no dealer or players run, the logged claims and verdicts are only logged again, and the
+ * logged scores are displayed as they were recorded. The user interface takes no input (it has no players).
+ * Run with: mvn exec:java -Dexec.mainClass=bguspl.set.Replay -Dexec.args="eventLogFile [realTime] [configFile]"
+ */
+public class Replay implements EventLog.Listener {
+
+    private final Logger logger;
+    private final Properties properties;
+    private final boolean realTime;
+
+    private Env env;
+    private Table table;
+    private int[] scores;
+
+    /**
+     * The time (System.nanoTime()) the replay started.
+     */
+    private long start;
+
+    private int events;
+
+    /**
+     * The number of token events that did not apply to the replayed table (a token placed on an empty slot, or the
+     * removal of a missing token). The table logs its events in the order they took effect, so this stays 0.
+     */
+    private int mismatches;
+
+    /**
+     * @param logger     - the logger.
+     * @param properties - the configuration properties of the replayed game (the log header overrides the seed, the
+     *                   deck and the number of players).
+     * @param realTime   - true iff the events should be replayed at the pace they were logged.
+     */
+    public Replay(Logger logger, Properties properties, boolean realTime) {
+        this.logger = logger;
+        this.properties = properties;
+        this.realTime = realTime;
+    }
+
+    @Override
+    public void header(EventLog.Header header) {
+        properties.setProperty("Seed", Long.toString(header.seed));
+        properties.setProperty("FeatureSize", Integer.toString(header.featureSize));
+        properties.setProperty("FeatureCount", Integer.toString(header.featureCount));
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(header.players));
+        properties.setProperty("TableDelaySeconds", "0"); // the logged timestamps already include the table delay
+        properties.setProperty("EventLogFile", "");
+        Config config = new Config(logger, properties);
+        if (config.tableSize != header.tableSize)
+            throw new IllegalArgumentException("the log has a table of " + header.tableSize + " slots, the configuration has " + config.tableSize);
+
+        Util util = new UtilImpl(config);
+        UserInterface ui = null;
+        try {
+            ui = new UserInterfaceSwing(logger, config, new Player[config.players]);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            logger.severe("error creating swing user interface: " + e.getMessage());
+        }
+        env = new Env(logger, config, new UserInterfaceDecorator(logger, util, ui), util);
+        table = new Table(env);
+        scores = new int[config.players];
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void deal(long time, int[] cards, int[] slots) {
+        at(time);
+        table.placeCards(cards, slots);
+    }
+
+    @Override
+    public void remove(long time, int[] slots) {
+        at(time);
+        for (int slot : slots)
+            table.setShouldBeRemoved(slot);
+        table.removeShouldBeRemoved();
+        table.applyPendingMutations();
+    }
+
+    @Override
+    public void token(long time, int player, int slot, boolean placed) {
+        at(time);
+        boolean applied;
+        if (placed) {
+            table.placeToken(player, slot);
+            applied = IntStream.of(table.getTokens(player)).anyMatch(token -> token == slot);
+        } else applied = table.removeToken(player, slot);
+        if (!applied) {
+            mismatches++;
+            logger.warning("player " + (player + 1) + "'s token " + (placed ? "placement" : "removal") + " on slot " + slot + " does not match the replayed table");
+        }
+    }
+
+    @Override
+    public void claim(long time, int player, int[] slots) {
+        at(time);
+        logger.info("player " + (player + 1) + " claims slots " + Arrays.toString(slots));
+    }
+
+    @Override
+    public void verdict(long time, int player, int kind) {
+        at(time);
+        logger.info("verdict on player " + (player + 1) + "'s claim: " + Verdict.Kind.values()[kind]);
+    }
+
+    @Override
+    public void score(long time, int player, int score) {
+        at(time);
+        scores[player] = score;
+        env.ui.setScore(player, score);
+    }
+
+    @Override
+    public void reshuffle(long time) {
+        at(time);
+        logger.info("reshuffling the deck");
+    }
+
+    /**
+     * Waits until the time an event was logged at (in real time mode).
+     */
+    private void at(long time) {
+        events++;
+        long delay = start + time - System.nanoTime();
+        if (realTime && delay > 0) {
+            try { TimeUnit.NANOSECONDS.sleep(delay); }
+            catch (InterruptedException ignored) { }
+        }
+    }
+
+    /**
+     * Announces the winners of the replayed game.
+     */
+    private void finish() {
+        int maxScore = Arrays.stream(scores).max().orElse(0);
+        env.ui.announceWinner(IntStream.range(0, scores.length).filter(player -> scores[player] == maxScore).toArray());
+        System.out.println("replayed " + events + " events (" + mismatches + " mismatched), scores: " + Arrays.toString(scores));
+    }
+
+    /**
+     * The replay's main function.
+     *
+     * @param args - the event log file, optionally whether to replay in real time (default false) and the configuration
+     *             file (default config.properties).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: Replay eventLogFile [realTime] [configFile]");
+            return;
+        }
+        boolean realTime = args.length > 1 && Boolean.parseBoolean(args[1]);
+        String configFile = args.length > 2 ? args[2] : "config.properties";
+
+        Logger logger = Main.initLogger();
+        ThreadLogger.logStart(logger, Thread.currentThread().getName());
+        Replay replay = new Replay(logger, Config.loadProperties(configFile, logger), realTime);
+        try {
+            EventLog.read(Paths.get(args[0]), replay);
+            replay.finish();
+        } finally {
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            if (replay.env != null) replay.env.ui.dispose();
+            for (Handler h : logger.getHandlers()) h.flush();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A scaling benchmark for the set engine of UtilImpl on large custom decks.
+ * Run with: mvn exec:java -Dexec.mainClass=bguspl.set.SetEngineBenchmark [-Dexec.args="featureSize minCount maxCount"]
+ */
+public class SetEngineBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int TESTS_PER_ROUND = 1_000_000;
+    private static final int SEARCH_CARDS = 81;
+
+    /**
+     * Prevents the JIT from eliminating the measured work.
+     */
+    private static long blackhole;
+
+    /**
+     * The benchmark's main function.
+     *
+     * @param args - optional feature size (default 3) and feature count range (default 4..8).
+     */
+    public static void main(String[] args) {
+        int featureSize = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int minCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int maxCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        Logger logger = Logger.getLogger("SetEngineBenchmark");
+        logger.setUseParentHandlers(false);
+
+        System.out.printf("%-8s %-8s %10s %14s %14s %14s%n",
+                "size", "count", "deck", "setup (ms)", "testSet (ns)", "findSets (ms)");
+        for (int featureCount = minCount; featureCount <= maxCount; ++featureCount) {
+            Properties properties = new Properties();
+            properties.setProperty("FeatureSize", Integer.toString(featureSize));
+            properties.setProperty("FeatureCount", Integer.toString(featureCount));
+            Config config = new Config(logger, properties);
+            logger.setLevel(Level.OFF);
+
+            long start = System.nanoTime();
+            Util util = new UtilImpl(config);
+            double setupMillis = (System.nanoTime() - start) / 1e6;
+
+            SplittableRandom random = new SplittableRandom(featureCount);
+            double testNanos = Double.MAX_VALUE, searchMillis = Double.MAX_VALUE;
+            for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; ++round) {
+                double test = measureTestSet(config, util, random);
+                double search = measureFindSets(config, util, random);
+                if (round >= WARMUP_ROUNDS) {
+                    testNanos = Math.min(testNanos, test);
+                    searchMillis = Math.min(searchMillis, search);
+                }
+            }
+            System.out.printf("%-8d %-8d %10d %14.2f %14.2f %14.3f%n",
+                    featureSize, featureCount, config.deckSize, setupMillis, testNanos, searchMillis);
+        }
+        if (blackhole == 42) System.out.println();
+    }
+
+    /**
+     * @return - the average time (in nanoseconds) of testSet on random candidates, half of which are legal sets.
+     */
+    private static double measureTestSet(Config config, Util util, SplittableRandom random) {
+        int[][] candidates = new int[1024][config.featureSize];
+        for (int[] cards : candidates) {
+            for (int i = 0; i < cards.length; ++i)
+                cards[i] = random.nextInt(config.deckSize);
+            int last = util.completeSet(cards, cards.length - 1);
+            if (last >= 0 && random.nextBoolean()) cards[cards.length - 1] = last;
+        }
+
+        long start = System.nanoTime();
+        long legal = 0;
+        for (int i = 0; i < TESTS_PER_ROUND; ++i)
+            if (util.testSet(candidates[i & (candidates.length - 1)])) ++legal;
+        blackhole += legal;
+        return (double) (System.nanoTime() - start) / TESTS_PER_ROUND;
+    }
+
+    /**
+     * @return - the time (in milliseconds) to enumerate all sets among a random sample of cards.
+     */
+    private static double measureFindSets(Config config, Util util, SplittableRandom random) {
+        int len = Math.min(SEARCH_CARDS, config.deckSize);
+        int[] cards = random.ints(0, config.deckSize).distinct().limit(len).toArray();
+
+        long start = System.nanoTime();
+        blackhole += util.findSets(cards, len, Integer.MAX_VALUE, set -> true);
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
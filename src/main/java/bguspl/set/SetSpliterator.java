@@ -0,0 +1,95 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A lazy spliterator over the sets among an array of cards, found by pair completion. Each advance resumes the pair
+ * search where the previous one stopped, so a stream over it stops searching as soon as it is short-circuited. The
+ * range of the outer pair index can be split for parallel streams.
+ */
+class SetSpliterator implements Spliterator<int[]> {
+
+    /**
+     * The number of pairs below which the spliterator is not split any further.
+     */
+    private static final long MIN_SPLIT_PAIRS = 1 << 10;
+
+    private final Util util;
+    private final int[] cards;
+    private final int[] position;
+
+    /**
+     * The current pair (i, j) of the search, and the end of the outer index range (exclusive).
+     */
+    private int i;
+    private int j;
+    private int to;
+
+    /**
+     * @param util     - the util used to complete pairs of cards.
+     * @param cards    - the cards to search in.
+     * @param position - the position of each card in the cards array (-1 if absent), shared read-only by all splits.
+     * @param from     - the first outer pair index (inclusive).
+     * @param to       - the last outer pair index (exclusive).
+     */
+    SetSpliterator(Util util, int[] cards, int[] position, int from, int to) {
+        this.util = util;
+        this.cards = cards;
+        this.position = position;
+        this.i = from;
+        this.j = from + 1;
+        this.to = to;
+    }
+
+    /**
+     * @return - the number of pairs (i, j) with from <= i < to and i < j < cards.length.
+     */
+    private long pairs(int from, int to) {
+        return ((long) (cards.length - 1 - from) + (cards.length - to)) * (to - from) / 2;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super int[]> action) {
+        for (; i < to; ++i, j = i + 1)
+            for (; j < cards.length - 1; ++j) {
+                int third = util.completeSet(cards[i], cards[j]);
+                if (position[third] > j) {
+                    int[] set = {cards[i], cards[j], third};
+                    Arrays.sort(set);
+                    ++j;
+                    action.accept(set);
+                    return true;
+                }
+            }
+        return false;
+    }
+
+    @Override
+    public Spliterator<int[]> trySplit() {
+        // only split whole outer indices that were not started yet
+        int from = j == i + 1 ? i : i + 1;
+        long total = pairs(from, to);
+        if (total < MIN_SPLIT_PAIRS || to - from < 2) return null;
+
+        int mid = from + 1;
+        while (mid < to - 1 && pairs(from, mid) < total / 2) ++mid;
+        SetSpliterator prefix = new SetSpliterator(util, cards, position, i, mid);
+        prefix.j = j;
+        i = mid;
+        j = mid + 1;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        // every pair is completed to a set with probability of about 1 / cards.length
+        return Math.max(1, pairs(i, to) / Math.max(1, cards.length));
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+}
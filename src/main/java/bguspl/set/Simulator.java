@@ -0,0 +1,98 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Runs complete computer-player games headless and as fast as possible (no user interface, no logging, no table delay
+ * and no freezes), and reports the engine throughput.
+ * Run with: mvn exec:java -Dexec.mainClass=bguspl.set.Simulator [-Dexec.args="games seed configFile"]
+ */
+public class Simulator {
+
+    /**
+     * The configuration properties forced by the simulation (over the configuration file).
+     */
+    private static final String[][] SIMULATION_PROPERTIES = {
+            {"LogLevel", "OFF"},
+            {"RandomSpinMin", "0"},
+            {"RandomSpinMax", "0"},
+            {"HumanPlayers", "0"},
+            {"ComputerReactionSeconds", "0"},
+            {"ComputerMinReactionSeconds", "0"},
+            {"Hints", "False"},
+            {"TableDelaySeconds", "0"},
+            {"PointFreezeSeconds", "0"},
+            {"PenaltyFreezeSeconds", "0"},
+            {"EndGamePauseSeconds", "0"},
+            {"EventLogFile", ""},
+            // a table without a set is only replaced on timeout, so keep it short
+            {"TurnTimeoutSeconds", "1"},
+            {"TurnTimeoutWarningSeconds", "0"}};
+
+    /**
+     * The simulator's main function.
+     *
+     * @param args - optional number of games (default 100), seed (default random) and configuration file (default
+     *             config.properties). Game i runs with seed + i.
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        String configFile = args.length > 2 ? args[2] : "config.properties";
+
+        Logger logger = Logger.getLogger("SetSimulator");
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties(configFile, logger);
+        for (String[] property : SIMULATION_PROPERTIES)
+            properties.setProperty(property[0], property[1]);
+
+        // note: the players (and the hint services) run on virtual threads if configured, the dealers on the main thread
+        ExecutorService executor = null;
+        if (new Config(logger, properties).virtualThreads) {
+            executor = VirtualThreads.newExecutor();
+            if (executor == null) System.out.println("virtual threads require Java 21 or later, using platform threads");
+        }
+
+        Metrics metrics = new Metrics();
+        UserInterface ui = new UserInterfaceHeadless();
+        long sets = 0;
+        long start = System.nanoTime();
+        for (int game = 0; game < games; game++) {
+            properties.setProperty("Seed", Long.toString(seed + game));
+            Config config = new Config(logger, properties);
+            Env env = new Env(logger, config, ui, new UtilImpl(config), executor, metrics);
+
+            Player[] players = new Player[config.players];
+            Table table = new Table(env);
+            Dealer dealer = new Dealer(env, table, players);
+            for (int i = 0; i < players.length; i++)
+                players[i] = new Player(env, dealer, table, i, false);
+            dealer.run();
+
+            for (Player player : players)
+                sets += player.score();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (executor != null) executor.shutdown();
+
+        System.out.printf("games: %d (seed %d) in %.2fs%n", games, seed, seconds);
+        System.out.printf("throughput: %.2f games/s, %.1f sets/s%n", games / seconds, sets / seconds);
+        System.out.printf("verification latency (us): p50 %.1f, p90 %.1f, p99 %.1f, max %.1f (%d verifications)%n",
+                micros(metrics.verificationPercentile(50)), micros(metrics.verificationPercentile(90)),
+                micros(metrics.verificationPercentile(99)), micros(metrics.verificationPercentile(100)),
+                metrics.verifications());
+        System.out.printf("table lock wait: %.3fms in total (%d waits)%n",
+                metrics.lockWaitNanos() / 1e6, metrics.lockWaits());
+    }
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
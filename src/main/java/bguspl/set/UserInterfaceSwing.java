@@ -149,21 +149,37 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void placeCard(int slot, int card) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = deck[card];
+            setCard(slot, deck[card]);
             validate();
             repaint();
         }
 
         private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
+            setCard(slot, emptyCard);
+            validate();
+            repaint();
+        }
+
+        private void placeCards(int[] slots, int[] cards) {
+            for (int i = 0; i < slots.length; i++)
+                setCard(slots[i], deck[cards[i]]);
+            validate();
+            repaint();
+        }
+
+        private void removeCards(int[] slots) {
+            for (int slot : slots)
+                setCard(slot, emptyCard);
             validate();
             repaint();
         }
 
+        private void setCard(int slot, Image image) {
+            int row = slot / config.columns;
+            int column = slot % config.columns;
+            grid[row][column] = image;
+        }
+
         private void placeToken(int player, int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
@@ -284,6 +300,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         gamePanel.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        gamePanel.placeCards(slots, cards);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        gamePanel.removeCards(slots);
+    }
+
     @Override
     public void placeToken(int player, int slot) {
         gamePanel.placeToken(player, slot);
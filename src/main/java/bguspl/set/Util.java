@@ -1,6 +1,7 @@
 package bguspl.set;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -31,6 +32,26 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Returns the card that completes two cards to a legal set, when a pair of cards determines a set uniquely
+     * (i.e. the sets are of three cards with three values per feature).
+     *
+     * @param first  - the first card id.
+     * @param second - the second card id.
+     * @return - the id of the completing card, or -1 if pairs of cards do not determine a set.
+     */
+    int completeSet(int first, int second);
+
+    /**
+     * Returns the card that completes the given cards to a legal set of config.featureSize cards. The completing card
+     * is unique when len == config.featureSize - 1 (each feature is either the common value or the missing value).
+     *
+     * @param cards - an array of card ids.
+     * @param len   - the number of cards to complete (starting from index 0).
+     * @return - the id of the completing card, or -1 if there is none (or it is not unique).
+     */
+    int completeSet(int[] cards, int len);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +61,35 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds up to count sets among the first len cards of the given array and passes each one to the sink.
+     *
+     * @param cards - an array of card ids.
+     * @param len   - the number of cards to search in (starting from index 0).
+     * @param count - the maximum number of sets to find.
+     * @param sink  - receives the sets found (may stop the search early by returning false).
+     * @return - the number of sets passed to the sink.
+     */
+    int findSets(int[] cards, int len, int count, IntSetSink sink);
+
+    /**
+     * Checks if there is at least one legal set among the first len cards of the given array.
+     *
+     * @param cards - an array of card ids.
+     * @param len   - the number of cards to search in (starting from index 0).
+     * @return - true iff the cards contain a legal set.
+     */
+    boolean containsSet(int[] cards, int len);
+
+    /**
+     * Returns a lazy stream of the sets among the given cards. Sets are searched for only as the stream is consumed, so
+     * short-circuiting operations (e.g. findFirst, anyMatch, limit) stop the search. The stream may be made parallel.
+     *
+     * @param cards - an array of distinct card ids.
+     * @return - a stream of the legal sets (the sorted card ids of each set), in the same order as findSets.
+     */
+    Stream<int[]> sets(int[] cards);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -1,10 +1,14 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The implementation of the UserInterface interface.
@@ -13,11 +17,89 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * True iff a legal set of three cards is fully determined by any two of its cards (i.e. config.featureSize == 3).
+     */
+    private final boolean pairCompletion;
+
+    /**
+     * True iff the values of a feature fit in a 64-bit mask, so sets can be checked on packed card words.
+     */
+    private final boolean packedCards;
+
+    /**
+     * The precomputed lookup tables of the deck (shared with other instances using the same deck shape), see CardTables.
+     */
+    private final byte[] features;
+    private final long[] packed;
+    private final int[] weights;
+    private final int featureBits;
+    private final int[] completion;
+    private final int chunkSize;
+    private final int chunks;
+
+    /**
+     * A per-thread scratch array mapping each card to its position in the searched cards (-1 if absent). It is reset
+     * after every search, so searching does not allocate (note: a sink must not start another search on its thread).
+     */
+    private final ThreadLocal<int[]> positions;
+
+    /**
+     * A per-thread buffer holding the set that is currently passed to a sink.
+     */
+    private final ThreadLocal<int[]> setBuffers;
+
+    /**
+     * A per-thread random generator for spin, each one split from a generator seeded by config.seed.
+     */
+    private final ThreadLocal<SplittableRandom> spinRandom;
+
     public UtilImpl(Config config) {
         this.config = config;
+        this.pairCompletion = config.featureSize == 3;
+        this.packedCards = config.featureSize < Long.SIZE;
+
+        CardTables tables = CardTables.of(config.featureSize, config.featureCount);
+        features = tables.features;
+        packed = tables.packed;
+        weights = tables.weights;
+        featureBits = tables.featureBits;
+        completion = tables.completion;
+        chunkSize = tables.chunkSize;
+        chunks = tables.chunks;
+
+        SplittableRandom seeded = new SplittableRandom(config.seed);
+        spinRandom = ThreadLocal.withInitial(() -> {
+            synchronized (seeded) { return seeded.split(); }
+        });
+        setBuffers = ThreadLocal.withInitial(() -> new int[Math.max(3, config.featureSize)]);
+        positions = ThreadLocal.withInitial(() -> {
+            int[] position = new int[config.deckSize];
+            Arrays.fill(position, -1);
+            return position;
+        });
+    }
+
+    /**
+     * Returns the unique card that completes a pair of cards to a legal set (only valid when pairCompletion is true).
+     */
+    private int complete(int a, int b) {
+        if (chunks == 1) return completion[a * chunkSize + b];
+        int third = 0;
+        for (int i = 0, weight = 1; i < chunks; ++i, weight *= chunkSize) {
+            third += completion[a % chunkSize * chunkSize + b % chunkSize] * weight;
+            a /= chunkSize;
+            b /= chunkSize;
+        }
+        return third;
     }
 
     private void cardToFeatures(int card, int[] features) {
+        if (this.features.length > 0) {
+            for (int i = 0, offset = card * config.featureCount; i < config.featureCount; ++i)
+                features[i] = this.features[offset + i] & 0xFF;
+            return;
+        }
         for (int i = config.featureCount - 1; i >= 0; --i) {
             features[i] = card % config.featureSize;
             card /= config.featureSize;
@@ -40,7 +122,19 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        if (pairCompletion && cards.length == 3) {
+            for (int card : cards)
+                if (card < 0 || card >= config.deckSize) return false;
+            return complete(cards[0], cards[1]) == cards[2];
+        }
+
+        if (packedCards) {
+            for (int card : cards)
+                if (card < 0 || card >= config.deckSize) return false;
+            return testPacked(cards, cards.length);
+        }
+
+        int[][] features = cardsToFeatures(cards);
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
@@ -64,35 +158,226 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    /**
+     * Checks a set on the packed card words: for each feature, the values of the cards are collected into a bit mask,
+     * whose bit count is 1 iff the feature is the same in all cards and len iff it is different in all cards.
+     */
+    private boolean testPacked(int[] cards, int len) {
+        if (len == 0) return false;
+        long laneMask = (1L << featureBits) - 1;
+        for (int i = 0, shift = 0; i < config.featureCount; ++i, shift += featureBits) {
+            long values = 0;
+            for (int j = 0; j < len; ++j)
+                values |= 1L << (packed[cards[j]] >>> shift & laneMask);
+            int distinct = Long.bitCount(values);
+            if ((distinct == 1) == (distinct == len)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int completeSet(int first, int second) {
+        return pairCompletion ? complete(first, second) : -1;
+    }
+
+    @Override
+    public int completeSet(int[] cards, int len) {
+        if (len < 2 || len != config.featureSize - 1) return -1;
+        if (pairCompletion) return complete(cards[0], cards[1]);
+        if (!packedCards) return -1;
+
+        // each feature of the last card is the common value if all are the same, or the missing value if all differ
+        long laneMask = (1L << featureBits) - 1;
+        long allValues = (1L << config.featureSize) - 1;
+        int card = 0;
+        for (int i = 0, shift = 0; i < config.featureCount; ++i, shift += featureBits) {
+            long values = 0;
+            for (int j = 0; j < len; ++j)
+                values |= 1L << (packed[cards[j]] >>> shift & laneMask);
+            int distinct = Long.bitCount(values);
+            if (distinct == 1)
+                card += Long.numberOfTrailingZeros(values) * weights[i];
+            else if (distinct == len)
+                card += Long.numberOfTrailingZeros(~values & allValues) * weights[i];
+            else return -1;
+        }
+        return card;
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
+        int[] cards = deck.stream().mapToInt(Integer::intValue).toArray();
+        findSets(cards, cards.length, count, set -> sets.add(set.clone()));
+        return sets;
+    }
+
+    @Override
+    public int findSets(int[] cards, int len, int count, IntSetSink sink) {
+        if (pairCompletion && count == Integer.MAX_VALUE && len >= config.parallelFindSetsThreshold)
+            return findSetsInParallel(cards, len, sink);
+        if (pairCompletion) return findSetsByPairs(cards, len, count, sink);
+        if (packedCards && config.featureSize > 3) return findSetsByCompletion(cards, len, count, sink);
+        return findSetsByCombinations(cards, len, count, sink);
+    }
+
+    @Override
+    public boolean containsSet(int[] cards, int len) {
+        return findSets(cards, len, 1, set -> false) > 0;
+    }
+
+    /**
+     * Finds sets by walking every r-combination of the cards in lexicographic order (r being config.featureSize).
+     */
+    private int findSetsByCombinations(int[] cards, int len, int count, IntSetSink sink) {
+        int found = 0;
         int r = config.featureSize;
         int[] combination = new int[r];
+        int[] set = new int[r];
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
+        while (combination[r - 1] < len) {
+            for (int i = 0; i < r; ++i)
+                set[i] = cards[combination[i]];
+            Arrays.sort(set);
+            if (testSet(set)) {
+                ++found;
+                if (!sink.accept(set) || found >= count) return found;
             }
 
             // generate next combination in lexicographic order
             int t = r - 1;
-            while (t != 0 && combination[t] == n - r + t) --t;
+            while (t != 0 && combination[t] == len - r + t) --t;
             combination[t]++;
             for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
         }
-        return sets;
+        return found;
+    }
+
+    @Override
+    public Stream<int[]> sets(int[] cards) {
+        if (!pairCompletion) {
+            // note: without pair completion the sets are found eagerly
+            List<int[]> sets = new ArrayList<>();
+            findSets(cards, cards.length, Integer.MAX_VALUE, set -> sets.add(set.clone()));
+            return sets.stream();
+        }
+
+        int[] position = new int[config.deckSize];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < cards.length; ++i)
+            position[cards[i]] = i;
+        return StreamSupport.stream(new SetSpliterator(this, cards, position, 0, Math.max(0, cards.length - 2)), false);
+    }
+
+    /**
+     * Finds all the sets by pair completion on the common fork/join pool (used when enumerating all the sets of many
+     * cards). The sets are passed to the sink on the calling thread, in the same order as the sequential search.
+     */
+    private int findSetsInParallel(int[] cards, int len, IntSetSink sink) {
+        int[] position = new int[config.deckSize];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < len; ++i)
+            position[cards[i]] = i;
+
+        int found = 0;
+        for (int[] set : ForkJoinPool.commonPool().invoke(new FindSetsTask(this, cards, len, position, 0, Math.max(0, len - 2)))) {
+            ++found;
+            if (!sink.accept(set)) break;
+        }
+        return found;
+    }
+
+    /**
+     * Finds sets by walking every (r - 1)-combination of the cards in lexicographic order and looking their unique
+     * completing card up in the cards (r being config.featureSize), which visits O(n^(r-1)) combinations instead of
+     * O(n^r). Sets are reported in the same order as the full combination walk.
+     */
+    private int findSetsByCompletion(int[] cards, int len, int count, IntSetSink sink) {
+        int found = 0;
+        int k = config.featureSize - 1;
+        int[] combination = new int[k];
+        int[] partial = new int[k];
+        int[] set = setBuffers.get();
+        int[] position = positions.get();
+        try {
+            for (int i = 0; i < len; ++i)
+                position[cards[i]] = i;
+
+            for (int i = 0; i < k; ++i)
+                combination[i] = i;
+
+            while (combination[k - 1] < len) {
+                for (int i = 0; i < k; ++i)
+                    partial[i] = cards[combination[i]];
+                int last = completeSet(partial, k);
+                if (last >= 0 && position[last] > combination[k - 1]) {
+                    System.arraycopy(partial, 0, set, 0, k);
+                    set[k] = last;
+                    Arrays.sort(set, 0, k + 1);
+                    ++found;
+                    if (!sink.accept(set) || found >= count) return found;
+                }
+
+                // generate next combination in lexicographic order
+                int t = k - 1;
+                while (t != 0 && combination[t] == len - k + t) --t;
+                combination[t]++;
+                for (int i = t + 1; i < k; i++) combination[i] = combination[i - 1] + 1;
+            }
+            return found;
+        } finally {
+            for (int i = 0; i < len; ++i)
+                position[cards[i]] = -1;
+        }
+    }
+
+    /**
+     * Finds sets by completing every pair of cards and looking the completing card up in the deck, which visits
+     * O(n^2) pairs instead of O(n^3) triples. Sets are reported in the same order as the combination walk, since every
+     * pair (i, j) of deck positions is completed by at most one position k > j.
+     */
+    private int findSetsByPairs(int[] cards, int len, int count, IntSetSink sink) {
+        int found = 0;
+        int[] set = setBuffers.get();
+        int[] position = positions.get();
+        try {
+            for (int i = 0; i < len; ++i)
+                position[cards[i]] = i;
+
+            for (int i = 0; i < len - 2; ++i)
+                for (int j = i + 1; j < len - 1; ++j) {
+                    int third = complete(cards[i], cards[j]);
+                    if (position[third] > j) {
+                        sortInto(set, cards[i], cards[j], third);
+                        ++found;
+                        if (!sink.accept(set) || found >= count) return found;
+                    }
+                }
+            return found;
+        } finally {
+            for (int i = 0; i < len; ++i)
+                position[cards[i]] = -1;
+        }
+    }
+
+    /**
+     * Writes three card ids into the given array in ascending order.
+     */
+    private static void sortInto(int[] set, int a, int b, int c) {
+        if (a > b) { int t = a; a = b; b = t; }
+        if (b > c) { int t = b; b = c; c = t; }
+        if (a > b) { int t = a; a = b; b = t; }
+        set[0] = a;
+        set[1] = b;
+        set[2] = c;
     }
 
     public void spin() {
         if (config.randomSpinMax <= 0) return;
-        long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
+        long cycles = spinRandom.get().nextLong(config.randomSpinMin, config.randomSpinMax);
         for (int i = 0; i < cycles; ++i)
             Thread.yield();
     }
@@ -0,0 +1,87 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An immutable snapshot of a player's claim of a set: the claimed slots, the cards that were in them when the claim was
+ * made, and the time it was made. The dealer completes the claim's future verdict.
+ */
+public class Claim {
+
+    /**
+     * The id of the claiming player.
+     */
+    public final int player;
+
+    /**
+     * The claimed slots (-1 for a missing token).
+     */
+    private final int[] slots;
+
+    /**
+     * The cards in the claimed slots when the claim was made (respectively, -1 for an empty slot).
+     */
+    private final int[] cards;
+
+    /**
+     * The time (System.nanoTime()) the claim was made.
+     */
+    public final long time;
+
+    /**
+     * The dealer's future verdict on the claim.
+     */
+    public final CompletableFuture<Verdict> verdict;
+
+    public Claim(int player, int[] slots, int[] cards, long time) {
+        this.player = player;
+        this.slots = slots.clone();
+        this.cards = cards.clone();
+        this.time = time;
+        this.verdict = new CompletableFuture<>();
+    }
+
+    /**
+     * @return - the number of claimed slots.
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * @return - the i-th claimed slot (-1 for a missing token).
+     */
+    public int slot(int i) {
+        return slots[i];
+    }
+
+    /**
+     * @return - the card in the i-th claimed slot when the claim was made (-1 for an empty slot).
+     */
+    public int card(int i) {
+        return cards[i];
+    }
+
+    /**
+     * @return - a copy of the claimed slots.
+     */
+    public int[] slots() {
+        return slots.clone();
+    }
+
+    /**
+     * @return - a copy of the claimed cards.
+     */
+    public int[] cards() {
+        return cards.clone();
+    }
+
+    /**
+     * Orders claims by the time they were made (ties broken by the player id), so claims are resolved fairly and
+     * deterministically.
+     */
+    public static int compare(Claim first, Claim second) {
+        int order = Long.compare(first.time - second.time, 0);
+        return order != 0 ? order : Integer.compare(first.player, second.player);
+    }
+}
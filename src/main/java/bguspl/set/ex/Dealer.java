@@ -3,13 +3,20 @@ package bguspl.set.ex;
 import bguspl.set.Env;
 import bguspl.set.ThreadLogger;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class manages the dealer's threads and data
@@ -26,16 +33,24 @@ public class Dealer implements Runnable {
      */
     private final Table table;
     private final Player[] players;
-    private final ThreadLogger[] playerLoggers;
-    private Thread dealerThread;
-    private final Queue<Player> playerVerificationQueue;
+    private final Future<?>[] playerTasks;
+    private final Queue<Claim> playerVerificationQueue;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
 
-    private boolean isSleeping;
+    /**
+     * The sets that can still be collected among the cards that were not discarded.
+     */
+    private final RemainingSets remainingSets;
+
+    /**
+     * Computes and prints the hints in the background (null if hints are disabled).
+     */
+    private final HintService hintService;
+    private Future<?> hintTask;
 
     /**
      * True iff game should be terminated.
@@ -43,9 +58,16 @@ public class Dealer implements Runnable {
     private volatile boolean terminate;
 
     /**
-     * The time when the dealer needs to reshuffle the deck due to turn timeout.
+     * The time (System.nanoTime()) when the dealer needs to reshuffle the deck due to turn timeout.
      */
-    private long reshuffleTime = Long.MAX_VALUE;
+    private long reshuffleTime;
+
+    /**
+     * The dealer waits on this condition until a verification is submitted, the countdown display should tick or the
+     * reshuffle time arrives.
+     */
+    private final ReentrantLock wakeLock;
+    private final Condition wakeUp;
 
     public static final int ONE_SECOND = 1000;
     public static final int HUNDREDTH_SECOND = 10;
@@ -55,10 +77,13 @@ public class Dealer implements Runnable {
         this.env = env;
         this.table = table;
         this.players = players;
-        this.playerLoggers = new ThreadLogger[players.length];
+        this.playerTasks = new Future<?>[players.length];
         this.playerVerificationQueue = new ConcurrentLinkedQueue<>();
-        this.deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        this.isSleeping = false;
+        this.deck = new Deck(env.config.deckSize, new SplittableRandom(env.config.seed));
+        this.wakeLock = new ReentrantLock();
+        this.wakeUp = wakeLock.newCondition();
+        this.remainingSets = new RemainingSets(env);
+        this.hintService = env.config.hints ? new HintService(env, table) : null;
     }
 
     /**
@@ -66,25 +91,25 @@ public class Dealer implements Runnable {
      */
     @Override
     public void run() {
-
-        dealerThread = Thread.currentThread();
-
-        for (Player player : players) {
-            ThreadLogger ptl = new ThreadLogger(player, "player-" + player.id, env.logger);
-            ptl.startWithLog();
-            playerLoggers[player.id] = ptl;
-        }
+        for (Player player : players)
+            playerTasks[player.id] = start(player, "player-" + player.id);
+        if (hintService != null)
+            hintTask = start(hintService, "hints");
 
         while (!shouldFinish()) {
-            Collections.shuffle(deck);
+            deck.shuffle();
             placeCardsOnTable();
+            table.applyPendingMutations(); // the round starts once the cards are dealt
+            refreshHints();
             timerLoop();
             updateTimerDisplay(true);
             removeAllCardsFromTable();
         }
         announceWinners();
         terminate();
+        dropClaims();
         closePlayerThreads();
+        env.eventLog.close();
     }
 
     /**
@@ -92,13 +117,15 @@ public class Dealer implements Runnable {
      */
     private void timerLoop() {
         updateTimerDisplay(true);
-        while ((!terminate || !playerVerificationQueue.isEmpty()) && System.currentTimeMillis() < reshuffleTime) {
+        while ((!terminate || !playerVerificationQueue.isEmpty()) && System.nanoTime() - reshuffleTime < 0) {
             verifyPlayersSets();
             removeCardsFromTable();
+            applyDueMutations();
             placeCardsOnTable();
+            applyDueMutations();
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
-            if (deck.isEmpty() && env.util.findSets(table.getCards(), 1).size() == 0) {
+            if (!remainingSets.anySetRemaining()) {
                 terminate();
             }
         }
@@ -110,14 +137,54 @@ public class Dealer implements Runnable {
     public void terminate() {
         for (int i = players.length - 1; i >= 0; i--) {
             players[i].terminate();
-            playerLoggers[i].interrupt();
         }
         terminate = true;
+        wakeUp();
     }
 
     public void closePlayerThreads() {
-        for (int i = players.length - 1; i >= 0; i--) {
-            try { playerLoggers[i].joinWithLog(); } catch (InterruptedException ignored) { }
+        for (int i = players.length - 1; i >= 0; i--)
+            join(playerTasks[i], "player-" + i);
+        if (hintTask != null) {
+            hintService.terminate();
+            join(hintTask, "hints");
+        }
+    }
+
+    /**
+     * Starts a game thread: as a task on the environment's executor if there is one, otherwise on a dedicated thread.
+     *
+     * @param task - the thread's main loop.
+     * @param name - the thread's name (a pooled thread carries it while running the task).
+     * @return - the future used to join the thread.
+     */
+    private Future<?> start(Runnable task, String name) {
+        ThreadLogger.logStart(env.logger, name);
+        if (env.executor == null) {
+            FutureTask<Void> future = new FutureTask<>(task, null);
+            new Thread(future, name).start();
+            return future;
+        }
+        return env.executor.submit(() -> {
+            Thread thread = Thread.currentThread();
+            String poolName = thread.getName();
+            thread.setName(name);
+            try { task.run(); }
+            finally { thread.setName(poolName); }
+        });
+    }
+
+    /**
+     * Waits for a game thread started by start to terminate.
+     */
+    private void join(Future<?> task, String name) {
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            env.logger.severe("thread " + name + " failed: " + e.getCause());
+        } catch (InterruptedException ignored) {
+        } finally {
+            ThreadLogger.logStop(env.logger, name);
         }
     }
 
@@ -127,50 +194,94 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || !remainingSets.anySetRemaining();
     }
 
     /**
-     * Checks cards should be removed from the table and removes them.
+     * Checks cards should be removed from the table and submits their removal (applied after the table delay).
      */
     private void removeCardsFromTable() {
         table.removeShouldBeRemoved();
     }
 
     /**
-     * Check if any cards can be removed from the deck and placed on the table.
+     * Applies the submitted table changes whose delay has passed (the dealer keeps verifying claims until then).
+     */
+    private void applyDueMutations() {
+        if (table.applyDueMutations())
+            refreshHints();
+    }
+
+    private void refreshHints() {
+        if (hintService != null)
+            hintService.refresh();
+    }
+
+    /**
+     * Check if any cards can be removed from the deck and placed on the table, and submits their placement (applied
+     * after the table delay).
      */
     private void placeCardsOnTable() {
-        boolean placedSomething = false;
-        for (int slot = 0; slot < env.config.tableSize; slot++) {
-            if (deck.isEmpty())
-                break;
-            if (table.slotToCard[slot] == null) {
-                table.placeCard(deck.remove(0), slot);
-                placedSomething = true;
+        int[] cards = new int[env.config.tableSize];
+        int[] slots = new int[env.config.tableSize];
+        int count = 0;
+        for (int slot = 0; slot < env.config.tableSize && !deck.isEmpty(); slot++) {
+            if (table.slotToCard[slot] == null && !table.hasPendingMutation(slot)) {
+                cards[count] = deck.draw();
+                slots[count++] = slot;
             }
         }
-        if (placedSomething && env.config.hints)
-            table.hints();
+        if (count > 0)
+            table.submitPlaceCards(Arrays.copyOf(cards, count), Arrays.copyOf(slots, count));
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Wait until a verification is submitted, the countdown display should tick (on the next whole second, or every
+     * hundredth of a second in the warning period), a submitted table change is due or the reshuffle time arrives,
+     * whichever comes first.
      */
     private void sleepUntilWokenOrTimeout() {
-        boolean isWarn = reshuffleTime - System.currentTimeMillis() < env.config.turnTimeoutWarningMillis;
-        int sleepTime = isWarn ? HUNDREDTH_SECOND : ONE_SECOND;
-        try { isSleeping = true; Thread.sleep(sleepTime); }
-        catch (InterruptedException e) { env.logger.info("thread " + Thread.currentThread().getName() + " awakened."); }
-        finally { isSleeping = false; }
+        long now = System.nanoTime();
+        long timeLeft = reshuffleTime - now;
+        long warning = TimeUnit.MILLISECONDS.toNanos(env.config.turnTimeoutWarningMillis);
+        long wait;
+        if (timeLeft < warning) wait = TimeUnit.MILLISECONDS.toNanos(HUNDREDTH_SECOND);
+        else {
+            long second = TimeUnit.MILLISECONDS.toNanos(ONE_SECOND);
+            wait = timeLeft % second == 0 ? second : timeLeft % second;
+            if (timeLeft - warning < wait) wait = timeLeft - warning;
+        }
+        long deadline = now + Math.min(wait, Math.max(timeLeft, 0));
+        if (table.hasPendingMutations() && table.nextMutationDue() - deadline < 0)
+            deadline = table.nextMutationDue();
+
+        wakeLock.lock();
+        try {
+            long remaining;
+            while (playerVerificationQueue.isEmpty() && !terminate && (remaining = deadline - System.nanoTime()) > 0)
+                wakeUp.awaitNanos(remaining);
+        } catch (InterruptedException e) {
+            env.logger.info("thread " + Thread.currentThread().getName() + " interrupted.");
+        } finally {
+            wakeLock.unlock();
+        }
+    }
+
+    /**
+     * Wakes up the dealer thread if it is waiting.
+     */
+    private void wakeUp() {
+        wakeLock.lock();
+        try { wakeUp.signal(); }
+        finally { wakeLock.unlock(); }
     }
 
     /**
      * Reset and/or update the countdown and the countdown display.
      */
     private void updateTimerDisplay(boolean reset) {
-        if (reset) reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-        long timeLeft = reshuffleTime - System.currentTimeMillis();
+        if (reset) reshuffleTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(env.config.turnTimeoutMillis);
+        long timeLeft = Math.max(0, TimeUnit.NANOSECONDS.toMillis(reshuffleTime - System.nanoTime()));
         boolean isWarn = timeLeft < env.config.turnTimeoutWarningMillis;
         if (!isWarn) timeLeft = (long)Math.ceil((double)timeLeft / ONE_SECOND) * ONE_SECOND;
         env.ui.setCountdown(timeLeft, isWarn);
@@ -180,12 +291,9 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        for (Integer card : table.slotToCard) {
-            if (card != null) {
-                deck.add(card);
-                table.removeCard(table.cardToSlot[card]);
-            }
-        }
+        env.eventLog.reshuffle();
+        for (int card : table.clearAll())
+            deck.returnCard(card);
     }
 
     /**
@@ -207,33 +315,78 @@ public class Dealer implements Runnable {
         env.ui.announceWinner(playersIds);
     }
 
+    /**
+     * Verifies the submitted claims in batches: each batch is drained from the queue, sorted by the time the claims
+     * were made and checked against a single snapshot of the table, so the player who completed a set first gets it
+     * and a later claim of any of its cards fails.
+     */
     public void verifyPlayersSets() {
-        // note: only the dealer's thread calls this method, therefore no need to synchronize
+        // note: only the dealer's thread calls this method, and it is the only thread changing the cards on the table
+        int[] slotCards = new int[env.config.tableSize];
+        List<Claim> batch = new ArrayList<>();
         while (!playerVerificationQueue.isEmpty()) {
-            Player player = playerVerificationQueue.poll();
-            assert player != null;
-            if (table.hasValidSet(player.id)) {
-                int[] tokens = table.getTokens(player.id);
-                for (int token : tokens) {
-                    table.setShouldBeRemoved(token);
-                }
-                player.point();
-                updateTimerDisplay(true);
-            } else player.penalty();
-
-            player.getPlayerThread().interrupt();
+            for (Claim claim = playerVerificationQueue.poll(); claim != null; claim = playerVerificationQueue.poll())
+                batch.add(claim);
+            batch.sort(Claim::compare);
+            table.snapshot(slotCards);
+            for (Claim claim : batch) {
+                Player player = players[claim.player];
+                env.eventLog.claim(claim.player, claim.slots(), claim.time);
+                Verdict.Kind kind = judge(claim, slotCards);
+                env.eventLog.verdict(claim.player, kind.ordinal());
+                long freeze = 0;
+                if (kind == Verdict.Kind.POINT) {
+                    for (int i = 0; i < claim.size(); i++) {
+                        remainingSets.discard(claim.card(i));
+                        table.setShouldBeRemoved(claim.slot(i));
+                        slotCards[claim.slot(i)] = -1; // taken, later claims of the card are stale
+                    }
+                    player.point();
+                    env.eventLog.score(player.id, player.score());
+                    updateTimerDisplay(true);
+                    freeze = env.config.pointFreezeMillis;
+                } else if (kind == Verdict.Kind.PENALTY) freeze = env.config.penaltyFreezeMillis;
+
+                long now = System.nanoTime();
+                claim.verdict.complete(new Verdict(kind, now + TimeUnit.MILLISECONDS.toNanos(freeze)));
+                env.metrics.verification(now - claim.time);
+            }
+            batch.clear();
         }
     }
 
-    public void addVerifyPlayer(Player player) {
-        playerVerificationQueue.add(player);
+    /**
+     * @return - the kind of verdict on a claim: stale unless all the claimed cards are still on the table (and not taken
+     * by an earlier claim) in the slots they were claimed in, otherwise a point iff they are a legal set.
+     */
+    private Verdict.Kind judge(Claim claim, int[] slotCards) {
+        for (int i = 0; i < claim.size(); i++) {
+            int slot = claim.slot(i);
+            if (slot < 0 || claim.card(i) < 0 || slotCards[slot] != claim.card(i) || table.shouldBeRemoved[slot] == Boolean.TRUE)
+                return Verdict.Kind.STALE;
+        }
+        return env.util.testSet(claim.cards()) ? Verdict.Kind.POINT : Verdict.Kind.PENALTY;
     }
 
-    public Thread getDealerThread() {
-        return dealerThread;
+    /**
+     * Submits a player's set for verification, and wakes up the dealer thread to verify it.
+     *
+     * @param player - the claiming player.
+     * @return - the future verdict on the claim (stale if the game is terminated before the claim is verified).
+     */
+    public CompletableFuture<Verdict> claim(Player player) {
+        Claim claim = table.claim(player.id);
+        playerVerificationQueue.add(claim);
+        wakeUp();
+        if (terminate) dropClaims(); // the dealer may have stopped verifying
+        return claim.verdict;
     }
 
-    public boolean isSleeping() {
-        return isSleeping;
+    /**
+     * Completes the claims that were not verified yet as stale.
+     */
+    private void dropClaims() {
+        for (Claim claim = playerVerificationQueue.poll(); claim != null; claim = playerVerificationQueue.poll())
+            claim.verdict.complete(new Verdict(Verdict.Kind.STALE, System.nanoTime()));
     }
 }
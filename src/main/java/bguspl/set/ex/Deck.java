@@ -0,0 +1,85 @@
+package bguspl.set.ex;
+
+import java.util.SplittableRandom;
+
+/**
+ * The dealer's deck of cards, kept as a primitive array with a read cursor: the cards in the deck are
+ * cards[cursor..size), so drawing a card and returning one are O(1) and no card is ever boxed.
+ *
+ * @inv 0 <= cursor <= cards.length
+ */
+public class Deck {
+
+    /**
+     * The cards; the ones in the deck are at the positions from the cursor on.
+     */
+    private final int[] cards;
+
+    /**
+     * The position of the next card to draw.
+     */
+    private int cursor;
+
+    /**
+     * The random generator used to shuffle the deck.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Creates a deck holding all the cards 0..deckSize-1 (in order).
+     *
+     * @param deckSize - the number of cards.
+     * @param random   - the random generator used to shuffle the deck.
+     */
+    public Deck(int deckSize, SplittableRandom random) {
+        this.cards = new int[deckSize];
+        for (int card = 0; card < deckSize; card++)
+            cards[card] = card;
+        this.cursor = 0;
+        this.random = random;
+    }
+
+    /**
+     * Shuffles the cards in the deck in place (Fisher-Yates).
+     */
+    public void shuffle() {
+        for (int i = cards.length - 1; i > cursor; i--) {
+            int j = cursor + random.nextInt(i - cursor + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+    }
+
+    /**
+     * @return - the card drawn from the top of the deck.
+     * @pre - the deck is not empty.
+     */
+    public int draw() {
+        return cards[cursor++];
+    }
+
+    /**
+     * Returns a card to the top of the deck.
+     *
+     * @param card - a card that was drawn from this deck.
+     * @pre - the deck is not full.
+     */
+    public void returnCard(int card) {
+        cards[--cursor] = card;
+    }
+
+    /**
+     * @return - the number of cards in the deck.
+     */
+    public int size() {
+        return cards.length - cursor;
+    }
+
+    /**
+     * @return - true iff there are no cards in the deck.
+     */
+    public boolean isEmpty() {
+        return cursor == cards.length;
+    }
+}
@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import bguspl.set.UserInterface;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Displays the freeze countdowns of the players. A single timer thread, shared by all the players of all the games in
+ * the JVM, updates each countdown on every whole second left, and clears it when the freeze ends.
+ */
+public class FreezeTimer {
+
+    private static final long ONE_SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The shared timer thread (a daemon, so it does not keep the JVM alive after the games end).
+     */
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+        Thread thread = new Thread(task, "freeze-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private final UserInterface ui;
+    private final int player;
+
+    /**
+     * The time (System.nanoTime()) the freeze ends.
+     */
+    private final long freezeUntil;
+
+    /**
+     * The scheduled next update of the countdown (null before the first one is scheduled).
+     */
+    private ScheduledFuture<?> next;
+
+    private boolean cancelled;
+
+    private FreezeTimer(UserInterface ui, int player, long freezeUntil) {
+        this.ui = ui;
+        this.player = player;
+        this.freezeUntil = freezeUntil;
+    }
+
+    /**
+     * Starts displaying a player's freeze countdown.
+     *
+     * @param ui          - the user interface to display the countdown on.
+     * @param player      - the id of the frozen player.
+     * @param freezeUntil - the time (System.nanoTime()) the freeze ends.
+     * @return - the countdown, to cancel it if the freeze is cut short.
+     */
+    public static FreezeTimer start(UserInterface ui, int player, long freezeUntil) {
+        FreezeTimer countdown = new FreezeTimer(ui, player, freezeUntil);
+        countdown.tick();
+        return countdown;
+    }
+
+    /**
+     * Stops the countdown and clears it from the display.
+     */
+    public synchronized void cancel() {
+        if (cancelled) return;
+        cancelled = true;
+        if (next != null) next.cancel(false);
+        ui.setFreeze(player, 0);
+    }
+
+    /**
+     * Displays the time left, and schedules the next update: on the next whole second left, or when the freeze ends.
+     */
+    private synchronized void tick() {
+        if (cancelled) return;
+        long left = freezeUntil - System.nanoTime();
+        if (left <= 0) {
+            ui.setFreeze(player, 0);
+            cancelled = true;
+            return;
+        }
+        ui.setFreeze(player, TimeUnit.NANOSECONDS.toMillis(left + ONE_SECOND_NANOS - 1) / 1000 * 1000); // whole seconds, rounded up
+        long wait = left % ONE_SECOND_NANOS == 0 ? ONE_SECOND_NANOS : left % ONE_SECOND_NANOS;
+        next = timer.schedule(this::tick, wait, TimeUnit.NANOSECONDS);
+    }
+}
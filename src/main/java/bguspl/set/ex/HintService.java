@@ -0,0 +1,159 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Computes the hints (the legal sets on the table) in the background, whenever the table version changes.
+ * The dealer only requests a refresh, which never blocks; the sets are enumerated on a snapshot of the table, a result
+ * whose table version changed meanwhile is dropped, and the hints are published to a listener from the service thread.
+ */
+public class HintService implements Runnable {
+
+    /**
+     * Receives the hints computed for a table version.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onHints(long version, List<String> hints);
+    }
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The table to compute the hints for.
+     */
+    private final Table table;
+
+    /**
+     * The listener the hints are published to.
+     */
+    private final Listener listener;
+
+    /**
+     * The table version of the last published hints (-1 if none), used only by the service thread.
+     */
+    private long hintsVersion = -1;
+
+    /**
+     * The service thread (null until it runs).
+     */
+    private volatile Thread serviceThread;
+
+    /**
+     * True iff the service should be terminated.
+     */
+    private volatile boolean terminate;
+
+    /**
+     * Creates a hint service that prints the hints to the console through a buffered writer.
+     *
+     * @param env   - the game environment object.
+     * @param table - the table to compute the hints for.
+     */
+    public HintService(Env env, Table table) {
+        this(env, table, printer());
+    }
+
+    public HintService(Env env, Table table, Listener listener) {
+        this.env = env;
+        this.table = table;
+        this.listener = listener;
+    }
+
+    private static Listener printer() {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        return (version, hints) -> {
+            for (String hint : hints)
+                out.println(hint);
+            out.flush();
+        };
+    }
+
+    /**
+     * The service thread starts here: recomputes the hints each time the table version changes.
+     */
+    @Override
+    public void run() {
+        serviceThread = Thread.currentThread();
+        int[] slotCards = new int[env.config.tableSize];
+        while (!terminate) {
+            if (table.version() == hintsVersion) {
+                LockSupport.park(this);
+                continue;
+            }
+            long version = table.snapshot(slotCards);
+            List<String> computed = computeHints(slotCards);
+            if (table.version() != version) continue; // stale, the table changed while computing
+            hintsVersion = version;
+            listener.onHints(version, computed);
+        }
+    }
+
+    /**
+     * Requests the hints of the current table to be published (does not block).
+     */
+    public void refresh() {
+        Thread thread = serviceThread;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    /**
+     * Called when the game should be terminated.
+     */
+    public void terminate() {
+        terminate = true;
+        Thread thread = serviceThread;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    private List<String> computeHints(int[] slotCards) {
+        List<String> computed = new ArrayList<>();
+        Iterator<int[]> sets = env.util.sets(cardsOf(slotCards)).iterator();
+        while (sets.hasNext() && !terminate)
+            computed.add(hint(env, slotCards, sets.next()));
+        return computed;
+    }
+
+    /**
+     * @param slotCards - the card in each slot of the table (-1 if none).
+     * @return - the cards on the table.
+     */
+    private static int[] cardsOf(int[] slotCards) {
+        return Arrays.stream(slotCards).filter(card -> card >= 0).toArray();
+    }
+
+    /**
+     * Formats the hint of a legal set on the table: the (sorted) slots of its cards and their features.
+     *
+     * @param env       - the game environment object.
+     * @param slotCards - the card in each slot of the table (-1 if none).
+     * @param set       - the cards of the set.
+     * @return - the hint line.
+     */
+    private static String hint(Env env, int[] slotCards, int[] set) {
+        int[] slots = new int[set.length];
+        for (int i = 0; i < set.length; i++)
+            slots[i] = slotOf(slotCards, set[i]);
+        Arrays.sort(slots);
+        int[][] features = env.util.cardsToFeatures(set);
+        return "Hint: Set found: slots: " + Arrays.toString(slots) + " features: " + Arrays.deepToString(features);
+    }
+
+    private static int slotOf(int[] slotCards, int card) {
+        for (int slot = 0; slot < slotCards.length; slot++)
+            if (slotCards[slot] == card) return slot;
+        return -1;
+    }
+}
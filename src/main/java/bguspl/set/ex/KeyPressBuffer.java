@@ -0,0 +1,159 @@
+package bguspl.set.ex;
+
+import bguspl.set.KeyPressOverflow;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free ring buffer of key presses, with a single producer (the UI thread) and a single consumer (the
+ * player's thread). The producer never blocks: when the buffer is full, the overflow policy decides which press is lost.
+ * The consumer parks while the buffer is empty and is unparked by the producer.
+ *
+ * Each cell holds the position of its press in the stream of presses (so a cell reused for a later press is told apart
+ * from the one read earlier) together with the pressed slot. A press is taken by marking its cell as taken, so the
+ * consumer taking a press and the producer dropping it never both succeed.
+ */
+public class KeyPressBuffer {
+
+    /**
+     * Returned by poll when the buffer is empty.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The bit marking a cell whose press was taken (or dropped).
+     */
+    private static final long TAKEN = 1L << 31;
+
+    private static final long SLOT_MASK = TAKEN - 1;
+
+    private final AtomicLongArray cells;
+    private final int capacity;
+    private final KeyPressOverflow overflow;
+
+    /**
+     * The position of the oldest pending press (advanced by the consumer, and by the producer when dropping the oldest).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The position of the next press (advanced only by the producer).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The consumer's thread while it is parked (null otherwise).
+     */
+    private volatile Thread consumer;
+
+    private volatile boolean closed;
+
+    /**
+     * @param capacity - the maximal number of pending key presses.
+     * @param overflow - what to do with a key press when the buffer is full.
+     */
+    public KeyPressBuffer(int capacity, KeyPressOverflow overflow) {
+        if (capacity <= 0) throw new IllegalArgumentException("key press buffer capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.cells = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            cells.set(i, -1L); // matches no position
+    }
+
+    /**
+     * Adds a key press, never blocking. Called only by the producer.
+     *
+     * @param slot - the pressed slot.
+     * @return - true iff the press was added (false if it was dropped, or coalesced with a pending one).
+     */
+    public boolean offer(int slot) {
+        long t = tail.get();
+        while (t - head.get() >= capacity) {
+            if (overflow == KeyPressOverflow.DROP_NEWEST) return false;
+            if (overflow == KeyPressOverflow.COALESCE) {
+                cancel(slot, t);
+                return false;
+            }
+            dropOldest();
+        }
+        cells.set(index(t), t << 32 | slot);
+        tail.set(t + 1);
+        Thread waiting = consumer;
+        if (waiting != null) LockSupport.unpark(waiting);
+        return true;
+    }
+
+    /**
+     * Takes the oldest pending key press, without blocking. Called only by the consumer.
+     *
+     * @return - the pressed slot, or NONE if the buffer is empty.
+     */
+    public int poll() {
+        while (true) {
+            long h = head.get();
+            if (h == tail.get()) return NONE;
+            long cell = cells.get(index(h));
+            if (cell >> 32 != h) continue; // the producer dropped the press (and reused its cell) meanwhile
+            boolean taken = (cell & TAKEN) == 0 && cells.compareAndSet(index(h), cell, cell | TAKEN);
+            head.compareAndSet(h, h + 1); // skip a press taken or cancelled by the producer
+            if (taken) return (int) (cell & SLOT_MASK);
+        }
+    }
+
+    /**
+     * Takes the oldest pending key press, parking while the buffer is empty. Called only by the consumer.
+     *
+     * @return - the pressed slot, or NONE if the buffer was closed.
+     */
+    public int take() {
+        int slot = poll();
+        if (slot != NONE) return slot;
+        consumer = Thread.currentThread();
+        try {
+            // note: the producer unparks after adding, and the consumer polls after registering, so no wakeup is lost
+            while ((slot = poll()) == NONE && !closed)
+                LockSupport.park(this);
+        } finally {
+            consumer = null;
+        }
+        return slot;
+    }
+
+    /**
+     * Wakes up the consumer (if parked), and stops it from parking again.
+     */
+    public void close() {
+        closed = true;
+        Thread waiting = consumer;
+        if (waiting != null) LockSupport.unpark(waiting);
+    }
+
+    /**
+     * Drops the oldest pending press, unless the consumer takes it first.
+     */
+    private void dropOldest() {
+        long h = head.get();
+        long cell = cells.get(index(h));
+        if (cell >> 32 == h && (cell & TAKEN) == 0)
+            cells.compareAndSet(index(h), cell, cell | TAKEN);
+        head.compareAndSet(h, h + 1);
+    }
+
+    /**
+     * Cancels the newest pending press of a slot, unless the consumer takes it first.
+     */
+    private void cancel(int slot, long t) {
+        for (long position = t - 1; position >= head.get(); position--) {
+            long cell = cells.get(index(position));
+            if (cell == (position << 32 | slot) && cells.compareAndSet(index(position), cell, cell | TAKEN))
+                return;
+        }
+    }
+
+    private int index(long position) {
+        return (int) (position % capacity);
+    }
+}
@@ -1,10 +1,9 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
-import bguspl.set.ThreadLogger;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class manages the players' threads and data
@@ -34,16 +33,6 @@ public class Player implements Runnable {
      */
     public final int id;
 
-    /**
-     * The thread representing the current player.
-     */
-    private Thread playerThread;
-
-    /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
-     */
-    private ThreadLogger aiThread;
-
     /**
      * True iff the player is human (not a computer player).
      */
@@ -60,19 +49,36 @@ public class Player implements Runnable {
     private int score;
 
     /**
-     * The duration the player will be frozen for.
+     * The time (System.nanoTime()) until which the player is frozen, by the last verdict on its claims.
+     */
+    private long freezeUntil;
+
+    /**
+     * The display of the player's current freeze countdown (null if the player was never frozen).
      */
-    private long freezeTimeLeft;
+    private FreezeTimer freezeTimer;
 
     /**
-     * True iff the player has been frozen after the key was pressed.
+     * True iff the player got a verdict (and was frozen) since a key was last pressed.
      */
     private boolean afterFreeze;
 
     /**
-     * The queue of key presses.
+     * The strategy deciding the AI (computer) player's key presses (null for a human player).
      */
-    private final BlockingQueue<Integer> keyPresses;
+    private final PlayerStrategy strategy;
+
+    /**
+     * Lock and condition a frozen or reacting AI (computer) player waits on, so terminating the player cuts the wait
+     * short (a lock rather than the player's monitor, so a waiting player does not pin a virtual thread to its carrier).
+     */
+    private final ReentrantLock lock;
+    private final Condition wakeUp;
+
+    /**
+     * The pending key presses (of a human player), added by the UI thread and taken by the player's thread.
+     */
+    private final KeyPressBuffer keyPresses;
 
     /**
      * The class constructor.
@@ -84,15 +90,27 @@ public class Player implements Runnable {
      * @param human  - true iff the player is a human player (i.e. input is provided manually, via the keyboard).
      */
     public Player(Env env, Dealer dealer, Table table, int id, boolean human) {
+        this(env, dealer, table, id, human, human ? null : PlayerStrategy.create(env, table, id));
+    }
+
+    /**
+     * Creates a player with a given strategy.
+     *
+     * @param strategy - the strategy deciding the key presses of an AI (computer) player (null for a human player).
+     */
+    public Player(Env env, Dealer dealer, Table table, int id, boolean human, PlayerStrategy strategy) {
         this.env = env;
         this.dealer = dealer;
         this.table = table;
         this.id = id;
         this.human = human;
         this.score = 0;
-        this.freezeTimeLeft = 0;
+        this.freezeUntil = System.nanoTime();
         this.afterFreeze = false;
-        this.keyPresses = new ArrayBlockingQueue<>(Dealer.SET_SIZE);
+        this.keyPresses = new KeyPressBuffer(env.config.keyPressBufferSize, env.config.keyPressOverflow);
+        this.lock = new ReentrantLock();
+        this.wakeUp = lock.newCondition();
+        this.strategy = strategy;
     }
 
     /**
@@ -100,33 +118,13 @@ public class Player implements Runnable {
      */
     @Override
     public void run() {
-        playerThread = Thread.currentThread();
-        if (!human) createArtificialIntelligence();
-
         while (!terminate) {
-            consumeKeyPress();
+            // note: an AI (computer) player generates its key presses on this thread, rather than on another one
+            if (human) consumeKeyPress();
+            else generateKeyPress();
             verifySetWithDealer();
-            freezeRemainingTime();
+            Thread.yield(); // an AI player never blocks, let the dealer run (on virtual threads, they may share a carrier)
         }
-
-        if (!human) try { aiThread.joinWithLog(); } catch (InterruptedException ignored) { }
-    }
-
-    /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
-     */
-    private void createArtificialIntelligence() {
-        // note: this is a very, very smart AI (!)
-        aiThread = new ThreadLogger(() -> {
-
-            while (!terminate) {
-                freezeRemainingTime();
-                generateKeyPress();
-                verifySetWithDealer();
-            }
-        }, "computer-" + id, env.logger);
-        aiThread.startWithLog();
     }
 
     /**
@@ -134,6 +132,14 @@ public class Player implements Runnable {
      */
     public void terminate() {
         terminate = true;
+        keyPresses.close();
+        lock.lock();
+        try {
+            wakeUp.signalAll();
+            if (freezeTimer != null) freezeTimer.cancel();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -142,38 +148,37 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        // note: this is called by the UI thread, therefore waiting doesn't block the player's thread.
-        synchronized (this) {
-            while (keyPresses.remainingCapacity() == 0) {
-                try { wait(); } catch (InterruptedException ignored) { }
-            }
-            keyPresses.add(slot);
-            notifyAll();
-        }
+        // note: this is called by the UI thread, and never blocks it (a press overflowing the buffer is dropped)
+        if (!keyPresses.offer(slot))
+            env.logger.fine("player " + (id + 1) + " key press dropped (" + env.config.keyPressOverflow + ").");
     }
 
     /**
-     * Consume a key press from the queue of key presses, if available.
-     * Then press the corresponding slot on the table.
+     * Wait for a key press (or for the player to be terminated).
+     * Then press the corresponding slot on the table, unless the player is frozen (then the key press is ignored).
      */
     public void consumeKeyPress() {
         // note: only this player's thread uses this method, therefore no need to synchronize
-        try {
-            if (!keyPresses.isEmpty()) {
-                Integer slot = keyPresses.take();
-                if (table.pressSlot(id, slot))
-                    afterFreeze = false; // when a key is successfully pressed, the player is not frozen
-            }
-        } catch (InterruptedException ignored) { }
+        int slot = keyPresses.take();
+        if (slot != KeyPressBuffer.NONE && !isFrozen() && table.pressSlot(id, slot))
+            afterFreeze = false; // when a key is successfully pressed, the player is not frozen
     }
 
     /**
-     * Generate a key press for the AI (computer) player.
+     * Generate a key press for the AI (computer) player, after waiting for its freeze (if any) to end and for its
+     * strategy's reaction time.
      */
     public void generateKeyPress() {
         // note: only the AI thread calls this method
-        int slot = (int) (Math.random() * env.config.tableSize);
-        if (table.pressSlot(id, slot))
+        if (isFrozen()) {
+            awaitUntil(freezeUntil);
+            return;
+        }
+        long reaction = strategy.reactionNanos();
+        if (reaction > 0) awaitUntil(System.nanoTime() + reaction);
+        if (terminate) return;
+        int slot = strategy.nextSlot(table.getTokens(id));
+        if (slot != -1 && table.pressSlot(id, slot))
             afterFreeze = false; // when a key is successfully pressed, the player is not frozen
     }
 
@@ -187,15 +192,6 @@ public class Player implements Runnable {
         // note: only the dealer's thread calls this method, therefore no need to synchronize
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
-        freezeTimeLeft = env.config.pointFreezeMillis;
-    }
-
-    /**
-     * Penalize a player and perform other related actions.
-     */
-    public void penalty() {
-        // note: only the dealer's thread calls this method, therefore no need to synchronize
-        freezeTimeLeft = env.config.penaltyFreezeMillis;
     }
 
     /**
@@ -207,45 +203,46 @@ public class Player implements Runnable {
     }
 
     /**
-     * Freeze the remaining time of the player.
+     * @return - true iff the player is frozen.
      */
-    public void freezeRemainingTime() {
+    public boolean isFrozen() {
         // note: only this player's thread uses this method, therefore no need to synchronize
+        return freezeUntil - System.nanoTime() > 0;
+    }
+
+    /**
+     * Waits until the given time (System.nanoTime()), or until the player is terminated.
+     */
+    private void awaitUntil(long deadline) {
+        lock.lock();
         try {
-            if (freezeTimeLeft > 0 & !terminate) {
-                afterFreeze = true;
-                while (freezeTimeLeft > 0) {
-                    env.ui.setFreeze(id, freezeTimeLeft);
-                    long sleepTime = Math.min(freezeTimeLeft, Dealer.ONE_SECOND);
-                    Thread.sleep(sleepTime);
-                    freezeTimeLeft -= sleepTime;
-                }
-                freezeTimeLeft = 0;
-                env.ui.setFreeze(id, 0);
-            }
-        }
-        catch (InterruptedException ignored) {
-            env.logger.info("Player thread was interrupted during freeze. This shouldn't happen!");
+            long remaining;
+            while (!terminate && (remaining = deadline - System.nanoTime()) > 0)
+                wakeUp.awaitNanos(remaining);
+        } catch (InterruptedException ignored) {
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * If the player has a full set of tokens and is not frozen, claims it and waits for the dealer's verdict, which
+     * sets the time the player is frozen until.
+     */
     public void verifySetWithDealer() {
-        if (table.hasEnoughTokens(id) & !afterFreeze & !terminate) {
-            dealer.addVerifyPlayer(this);
-            if (dealer.isSleeping())
-                dealer.getDealerThread().interrupt(); // wake up the dealer thread
-            synchronized (this) {
+        if (table.hasEnoughTokens(id) & !afterFreeze & !terminate && !isFrozen()) {
+            Verdict verdict = dealer.claim(this).join(); // completed by the dealer thread
+            afterFreeze = true; // claim again only after pressing a key
+            freezeUntil = verdict.freezeUntil;
+            if (isFrozen()) {
+                lock.lock();
                 try {
-                    wait();
-                } // This is woken up by the dealer thread
-                catch (InterruptedException ignored) {
-
+                    if (freezeTimer != null) freezeTimer.cancel(); // its last tick may not have run yet
+                    if (!terminate) freezeTimer = FreezeTimer.start(env.ui, id, freezeUntil);
+                } finally {
+                    lock.unlock();
                 }
             }
         }
     }
-
-    public Thread getPlayerThread() {
-        return human ? playerThread : aiThread;
-    }
 }
@@ -0,0 +1,40 @@
+package bguspl.set.ex;
+
+import bguspl.set.ComputerStrategy;
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Decides the key presses of an AI (computer) player. A strategy is used only by its player's thread.
+ */
+public interface PlayerStrategy {
+
+    /**
+     * @return - the time (in nanoseconds) the player takes before its next key press.
+     */
+    long reactionNanos();
+
+    /**
+     * Chooses the next slot the player presses.
+     *
+     * @param tokens - the slots the player has tokens on (-1 for a missing token).
+     * @return - the slot to press, or -1 to press nothing this time.
+     */
+    int nextSlot(int[] tokens);
+
+    /**
+     * Creates the strategy configured for the computer players (config.computerStrategy).
+     *
+     * @param env    - the game environment object.
+     * @param table  - the table the player plays on.
+     * @param player - the id of the player (the strategy's random generator is seeded by config.seed and the id).
+     * @return - the strategy.
+     */
+    static PlayerStrategy create(Env env, Table table, int player) {
+        SplittableRandom random = new SplittableRandom(env.config.seed ^ (player + 1) * 0x9E3779B97F4A7C15L);
+        if (env.config.computerStrategy == ComputerStrategy.RANDOM)
+            return new RandomStrategy(env, random);
+        return new SetAwareStrategy(env, table, random);
+    }
+}
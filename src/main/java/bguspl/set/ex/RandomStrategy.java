@@ -0,0 +1,33 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Presses uniformly random slots, without any delay.
+ */
+public class RandomStrategy implements PlayerStrategy {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    private final SplittableRandom random;
+
+    public RandomStrategy(Env env, SplittableRandom random) {
+        this.env = env;
+        this.random = random;
+    }
+
+    @Override
+    public long reactionNanos() {
+        return 0;
+    }
+
+    @Override
+    public int nextSlot(int[] tokens) {
+        return random.nextInt(env.config.tableSize);
+    }
+}
@@ -0,0 +1,92 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps track of the legal sets that can still be collected, i.e. the sets among all the cards that were
+ * not discarded yet (whether they are in the deck or on the table).
+ *
+ * @inv count >= 0
+ */
+public class RemainingSets {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * True for each card that was not discarded yet.
+     */
+    private final boolean[] remaining;
+
+    /**
+     * True iff pairs of cards determine their set, so the count can be maintained incrementally.
+     */
+    private final boolean pairCompletion;
+
+    /**
+     * The number of legal sets among the remaining cards (only maintained when pairCompletion is true).
+     */
+    private long count;
+
+    /**
+     * Whether any set remains, cached until the next discard (used when pairCompletion is false).
+     */
+    private Boolean anySet;
+
+    public RemainingSets(Env env) {
+        this.env = env;
+        this.remaining = new boolean[env.config.deckSize];
+        Arrays.fill(remaining, true);
+        this.pairCompletion = env.util.completeSet(0, 0) >= 0;
+        // every pair of distinct cards is completed by exactly one card, and each set contains three pairs
+        this.count = pairCompletion ? (long) env.config.deckSize * (env.config.deckSize - 1) / 6 : 0;
+    }
+
+    /**
+     * Discards a card from the game and subtracts the sets it was part of.
+     *
+     * @param card - the card that was discarded.
+     *
+     * @post - the card is no longer counted as remaining.
+     */
+    public void discard(int card) {
+        // note: only the dealer's thread calls this method, therefore no need to synchronize
+        if (!remaining[card]) return;
+        remaining[card] = false;
+        if (!pairCompletion) {
+            anySet = null;
+            return;
+        }
+        for (int second = 0; second < remaining.length; second++) {
+            if (!remaining[second]) continue;
+            int third = env.util.completeSet(card, second);
+            if (third > second && remaining[third])
+                --count;
+        }
+    }
+
+    /**
+     * @return - true iff at least one legal set can still be collected.
+     */
+    public boolean anySetRemaining() {
+        if (pairCompletion) return count > 0;
+        if (anySet == null) {
+            int[] cards = remainingCards();
+            anySet = env.util.containsSet(cards, cards.length);
+        }
+        return anySet;
+    }
+
+    private int[] remainingCards() {
+        int[] cards = new int[remaining.length];
+        int size = 0;
+        for (int card = 0; card < remaining.length; card++)
+            if (remaining[card])
+                cards[size++] = card;
+        return Arrays.copyOf(cards, size);
+    }
+}
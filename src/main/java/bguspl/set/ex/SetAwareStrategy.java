@@ -0,0 +1,150 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays like a person looking for sets: the player picks a target of three slots, removes its tokens from other slots
+ * and places them on the target, one key press per reaction time.
+ * With probability config.computerSkill the target is one of the table's current sets (from its set index), otherwise
+ * it is three random cards (a mistake, usually penalized). The target is picked again once the player placed all its
+ * tokens on it (and claimed it), or when any of its cards left the table.
+ * The reaction time is the minimal reaction time plus an exponentially distributed part, so the mean is
+ * config.computerReactionMillis (a shifted exponential distribution, a common model of human reaction times).
+ */
+public class SetAwareStrategy implements PlayerStrategy {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The table the player plays on.
+     */
+    private final Table table;
+
+    private final SplittableRandom random;
+
+    /**
+     * The target slots, and the cards that were in them when the target was picked (null if there is no target).
+     */
+    private int[] targetSlots;
+    private final int[] targetCards = new int[Dealer.SET_SIZE];
+
+    public SetAwareStrategy(Env env, Table table, SplittableRandom random) {
+        this.env = env;
+        this.table = table;
+        this.random = random;
+    }
+
+    @Override
+    public long reactionNanos() {
+        long min = env.config.computerMinReactionMillis;
+        double exponential = -Math.log(1 - random.nextDouble()) * Math.max(0, env.config.computerReactionMillis - min);
+        return TimeUnit.MILLISECONDS.toNanos(min) + (long) (exponential * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Override
+    public int nextSlot(int[] tokens) {
+        if (targetSlots == null || targetLeftTable() || onTarget(tokens)) {
+            if (!pickTarget()) return -1;
+            if (onTarget(tokens)) return targetSlots[0]; // the same target again: take a token off, to claim it again
+        }
+        for (int slot : tokens)
+            if (slot != -1 && !contains(targetSlots, slot))
+                return slot; // remove a token from a slot outside the target
+        for (int slot : targetSlots)
+            if (!contains(tokens, slot))
+                return slot; // place a token on the target
+        return -1;
+    }
+
+    /**
+     * Picks a new target: a current set with probability config.computerSkill, otherwise three random cards.
+     *
+     * @return - true iff a target was picked (false if there are no sets to pick, or not enough cards on the table).
+     */
+    private boolean pickTarget() {
+        targetSlots = null;
+        int[] cards = null;
+        int[] slots = null;
+        if (random.nextDouble() < env.config.computerSkill) {
+            List<int[]> sets = table.currentSets();
+            int start = sets.isEmpty() ? 0 : random.nextInt(sets.size());
+            for (int i = 0; i < sets.size() && slots == null; i++) { // the first claimable set from a random one on
+                cards = sets.get((start + i) % sets.size());
+                slots = slotsOf(cards);
+            }
+        } else {
+            cards = randomCards();
+            if (cards != null) slots = slotsOf(cards);
+        }
+        if (slots == null) return false;
+
+        System.arraycopy(cards, 0, targetCards, 0, cards.length);
+        targetSlots = slots;
+        return true;
+    }
+
+    /**
+     * @param cards - the cards of a possible target.
+     * @return - the slots of the cards, or null if the player cannot claim them: they are not Dealer.SET_SIZE cards
+     *           (the player has that many tokens), or one of them is not on the table or is about to be removed.
+     */
+    private int[] slotsOf(int[] cards) {
+        if (cards.length != Dealer.SET_SIZE) return null;
+        int[] slots = new int[cards.length];
+        for (int i = 0; i < cards.length; i++) {
+            Integer slot = table.cardToSlot[cards[i]];
+            if (slot == null || Boolean.TRUE.equals(table.shouldBeRemoved[slot]) || table.hasPendingMutation(slot))
+                return null;
+            slots[i] = slot;
+        }
+        return slots;
+    }
+
+    /**
+     * @return - three distinct random cards on the table, or null if there are fewer cards on the table.
+     */
+    private int[] randomCards() {
+        int[] slotCards = new int[env.config.tableSize];
+        table.snapshot(slotCards);
+        int count = 0;
+        for (int card : slotCards)
+            if (card != -1) slotCards[count++] = card;
+        if (count < Dealer.SET_SIZE) return null;
+
+        int[] cards = new int[Dealer.SET_SIZE];
+        for (int i = 0; i < cards.length; i++) { // a partial Fisher-Yates shuffle of the cards
+            int j = i + random.nextInt(count - i);
+            int card = slotCards[j];
+            slotCards[j] = slotCards[i];
+            cards[i] = card;
+        }
+        return cards;
+    }
+
+    private boolean targetLeftTable() {
+        for (int i = 0; i < targetSlots.length; i++) {
+            Integer card = table.slotToCard[targetSlots[i]];
+            if (card == null || card != targetCards[i]) return true;
+        }
+        return false;
+    }
+
+    private boolean onTarget(int[] tokens) {
+        for (int slot : targetSlots)
+            if (!contains(tokens, slot)) return false;
+        return true;
+    }
+
+    private static boolean contains(int[] slots, int slot) {
+        for (int s : slots)
+            if (s == slot) return true;
+        return false;
+    }
+}
@@ -4,9 +4,13 @@ import bguspl.set.Env;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * This class contains the data that is visible to the player.
@@ -31,10 +35,15 @@ public class Table {
     protected final Integer[] cardToSlot; // slot per card (if any)
 
     /**
-     * Mapping between a slot and if the token is placed in it (null if none)
-     * for each player.
+     * The tokens of each player, as a bit mask over the slots: bit (slot % 64) of word (player * tokenWords + slot / 64)
+     * is set iff the player has a token on the slot. Tokens are placed and removed by compare-and-set, without locks.
      */
-    protected final Boolean[][] slotToToken; // token per slot (if any)
+    protected final AtomicLongArray tokens;
+
+    /**
+     * The number of 64-bit words used for the token bit mask of each player.
+     */
+    private final int tokenWords;
 
     /**
      * Mapping between a slot and if the card should be next removed.
@@ -42,14 +51,53 @@ public class Table {
     protected final Boolean[] shouldBeRemoved; // token per slot (if any)
 
     /**
-     * Locks for each slot.
+     * The legal sets among the cards currently on the table (the sorted card ids of each set).
+     * Kept up to date by applyPlaceCards and applyRemoveCards, guarded by its own monitor.
+     */
+    private final List<int[]> setIndex;
+
+    /**
+     * A card placement or removal submitted by the dealer, applied once its simulated delay has passed. Until then, the
+     * dealer keeps verifying claims; a slot with a pending removal still shows its card (and is marked to be removed).
+     */
+    private static class Mutation {
+        final int[] cards; // the cards to place (respectively), or null to remove the cards in the slots
+        final int[] slots;
+        long due; // System.nanoTime() after which the mutation is applied
+
+        Mutation(int[] cards, int[] slots) {
+            this.cards = cards;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * The mutations submitted by the dealer that were not applied yet (in submission order).
+     */
+    private final Queue<Mutation> pendingMutations;
+
+    /**
+     * The due time of the last submitted mutation (delays of consecutive mutations add up, as if done one by one).
      */
-    private final Object[] slotLocks;
+    private long lastMutationDue;
 
     /**
-     * Locks for each player.
+     * Lock for changing the cards on the table: writers hold it only while the slots state is changed, and readers take
+     * optimistic (validated) snapshots of the slots, falling back to a read lock only if a write raced with them.
      */
-    private final Object[] playerLocks;
+    private final StampedLock cardsLock;
+
+    /**
+     * The table version, incremented by every change of the cards on the table (under the write lock, and under the
+     * set index monitor together with the index changes).
+     */
+    private volatile long version;
+
+    /**
+     * A read-only copy of the set index, and the table version it was taken at (-1 if none).
+     */
+    private List<int[]> setsSnapshot;
+    private long setsSnapshotVersion = -1;
 
     /**
      * Constructor for testing.
@@ -62,16 +110,15 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
-        this.slotToToken = new Boolean[env.config.players][env.config.tableSize];
+        this.tokenWords = (env.config.tableSize + Long.SIZE - 1) / Long.SIZE;
+        this.tokens = new AtomicLongArray(env.config.players * tokenWords);
         this.shouldBeRemoved = new Boolean[env.config.tableSize];
 
-        this.slotLocks = new Object[env.config.tableSize];
-        for (int slot = 0; slot < env.config.tableSize; slot++)
-            slotLocks[slot] = new Object();
+        this.cardsLock = new StampedLock();
 
-        this.playerLocks = new Object[env.config.players];
-        for (int player = 0; player < env.config.players; player++)
-            playerLocks[player] = new Object();
+        this.pendingMutations = new ConcurrentLinkedQueue<>();
+        this.setIndex = new ArrayList<>();
+        rebuildSetIndex();
     }
 
     /**
@@ -84,32 +131,89 @@ public class Table {
     }
 
     /**
-     * This method prints all possible legal sets of cards that are currently on the table.
+     * Count the number of cards currently on the table.
+     *
+     * @return - the number of cards on the table.
      */
-    public void hints() {
-        synchronized (this) {
-            List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-            env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-                StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-                List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-                int[][] features = env.util.cardsToFeatures(set);
-                System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-            });
+    public int countCards() {
+        long stamp = cardsLock.tryOptimisticRead();
+        int cards = countCardsUnlocked();
+        if (!cardsLock.validate(stamp)) {
+            stamp = readLock();
+            try { cards = countCardsUnlocked(); }
+            finally { cardsLock.unlockRead(stamp); }
         }
+        return cards;
+    }
+
+    private int countCardsUnlocked() {
+        int cards = 0;
+        for (Integer card : slotToCard)
+            if (card != null)
+                ++cards;
+        return cards;
     }
 
     /**
-     * Count the number of cards currently on the table.
+     * @return - the table version, which is incremented by every change of the cards on the table.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Copies a consistent view of the slots into the given array, without allocating and (unless a write raced with
+     * the copy) without locking.
      *
-     * @return - the number of cards on the table.
+     * @param slotCards - an array of at least config.tableSize entries, filled with the card in each slot (-1 if none).
+     * @return - the table version of the copied view.
      */
-    public int countCards() {
-        synchronized (this) {
-            int cards = 0;
-            for (Integer card : slotToCard)
-                if (card != null)
-                    ++cards;
-            return cards;
+    public long snapshot(int[] slotCards) {
+        long stamp = cardsLock.tryOptimisticRead();
+        long snapshotVersion = version;
+        copySlots(slotCards);
+        if (!cardsLock.validate(stamp)) {
+            stamp = readLock();
+            try {
+                snapshotVersion = version;
+                copySlots(slotCards);
+            } finally {
+                cardsLock.unlockRead(stamp);
+            }
+        }
+        return snapshotVersion;
+    }
+
+    /**
+     * Acquires the cards lock for writing, recording the time waited for it (if it was not free) in the metrics.
+     */
+    private long writeLock() {
+        long stamp = cardsLock.tryWriteLock();
+        if (stamp == 0) {
+            long start = System.nanoTime();
+            stamp = cardsLock.writeLock();
+            env.metrics.lockWait(System.nanoTime() - start);
+        }
+        return stamp;
+    }
+
+    /**
+     * Acquires the cards lock for reading, recording the time waited for it (if it was not free) in the metrics.
+     */
+    private long readLock() {
+        long stamp = cardsLock.tryReadLock();
+        if (stamp == 0) {
+            long start = System.nanoTime();
+            stamp = cardsLock.readLock();
+            env.metrics.lockWait(System.nanoTime() - start);
+        }
+        return stamp;
+    }
+
+    private void copySlots(int[] slotCards) {
+        for (int slot = 0; slot < env.config.tableSize; slot++) {
+            Integer card = slotToCard[slot];
+            slotCards[slot] = card == null ? -1 : card;
         }
     }
 
@@ -121,54 +225,301 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
-        synchronized (slotLocks[slot]) {
-            synchronized (playerLocks) {
-                try { Thread.sleep(env.config.tableDelayMillis); }
-                catch (InterruptedException ignored) { }
+        submitPlaceCard(card, slot);
+        applyPendingMutations();
+    }
 
-                cardToSlot[card] = slot;
-                slotToCard[slot] = card;
-                env.ui.placeCard(card, slot);
-                for (int player = 0; player < env.config.players; player++)
-                    slotToToken[player][slot] = false;
+    /**
+     * Removes a card from a grid slot on the table.
+     * @param slot - the slot from which to remove the card.
+     */
+    public void removeCard(int slot) {
+        submitRemoveCard(slot);
+        applyPendingMutations();
+    }
+
+    /**
+     * Places a batch of cards on the table, as a single mutation: one table delay, one lock acquisition and one user
+     * interface update for the whole batch.
+     * @param cards - the card ids to place.
+     * @param slots - the slots in which the cards should be placed (respectively).
+     *
+     * @post - the cards are on the table, in the assigned slots.
+     */
+    public void placeCards(int[] cards, int[] slots) {
+        submitMutation(new Mutation(cards.clone(), slots.clone()));
+        applyPendingMutations();
+    }
+
+    /**
+     * Removes all the cards from the table, as a single mutation: one table delay, one lock acquisition and one user
+     * interface update.
+     *
+     * @return - the cards that were removed.
+     * @post - the table is empty.
+     */
+    public int[] clearAll() {
+        applyPendingMutations();
+        int[] cards = new int[env.config.tableSize];
+        int[] slots = new int[env.config.tableSize];
+        int count = 0;
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            if (slotToCard[slot] != null) {
+                cards[count] = slotToCard[slot];
+                slots[count++] = slot;
             }
+        if (count > 0) {
+            submitMutation(new Mutation(null, Arrays.copyOf(slots, count)));
+            applyPendingMutations();
         }
+        return Arrays.copyOf(cards, count);
     }
 
     /**
-     * Removes a card from a grid slot on the table.
+     * Submits the placement of a card in a grid slot, to be applied (by applyDueMutations or applyPendingMutations)
+     * once the table delay after the previously submitted mutation has passed.
+     * @param card - the card id to place in the slot.
+     * @param slot - the slot in which the card should be placed.
+     */
+    public void submitPlaceCard(int card, int slot) {
+        submitMutation(new Mutation(new int[]{card}, new int[]{slot}));
+    }
+
+    /**
+     * Submits the placement of a batch of cards, applied as a single mutation (see submitPlaceCard).
+     * @param cards - the card ids to place.
+     * @param slots - the slots in which the cards should be placed (respectively).
+     */
+    public void submitPlaceCards(int[] cards, int[] slots) {
+        submitMutation(new Mutation(cards.clone(), slots.clone()));
+    }
+
+    /**
+     * Submits the removal of the card in a grid slot, to be applied (by applyDueMutations or applyPendingMutations)
+     * once the table delay after the previously submitted mutation has passed.
      * @param slot - the slot from which to remove the card.
      */
-    public void removeCard(int slot) {
-        synchronized (slotLocks[slot]) {
-            synchronized (playerLocks) {
-                try { Thread.sleep(env.config.tableDelayMillis); }
+    public void submitRemoveCard(int slot) {
+        submitMutation(new Mutation(null, new int[]{slot}));
+    }
+
+    private void submitMutation(Mutation mutation) {
+        // note: only the dealer's thread submits and applies mutations, the queue is concurrent so others may inspect it
+        long start = Math.max(System.nanoTime(), lastMutationDue);
+        mutation.due = start + TimeUnit.MILLISECONDS.toNanos(env.config.tableDelayMillis);
+        lastMutationDue = mutation.due;
+        pendingMutations.add(mutation);
+    }
+
+    /**
+     * Applies the submitted mutations in order, each one as soon as its delay has passed. The delay is waited out
+     * without holding any lock, and the cards lock is held only while the slots state is changed.
+     *
+     * @post - there are no pending mutations.
+     */
+    public void applyPendingMutations() {
+        for (Mutation mutation = pendingMutations.peek(); mutation != null; mutation = pendingMutations.peek()) {
+            long delay = mutation.due - System.nanoTime();
+            if (delay > 0) {
+                try { TimeUnit.NANOSECONDS.sleep(delay); }
                 catch (InterruptedException ignored) { }
+            }
+            apply(mutation);
+        }
+    }
+
+    /**
+     * Applies the submitted mutations whose delay has passed, in order, without waiting for the others.
+     *
+     * @return - true iff any mutation was applied.
+     */
+    public boolean applyDueMutations() {
+        boolean applied = false;
+        for (Mutation mutation = pendingMutations.peek(); mutation != null && mutation.due - System.nanoTime() <= 0;
+             mutation = pendingMutations.peek()) {
+            apply(mutation);
+            applied = true;
+        }
+        return applied;
+    }
+
+    private void apply(Mutation mutation) {
+        if (mutation.cards == null) applyRemoveCards(mutation.slots);
+        else applyPlaceCards(mutation.cards, mutation.slots);
+        pendingMutations.poll();
+    }
 
-                int card = slotToCard[slot];
-                slotToCard[slot] = null;
-                cardToSlot[card] = null;
-                shouldBeRemoved[slot] = false;
-                env.ui.removeCard(slot);
+    /**
+     * @return - true iff there are submitted mutations that were not applied yet.
+     */
+    public boolean hasPendingMutations() {
+        return !pendingMutations.isEmpty();
+    }
+
+    /**
+     * @return - the time (System.nanoTime()) the next pending mutation is due (only meaningful if there is one).
+     */
+    public long nextMutationDue() {
+        Mutation mutation = pendingMutations.peek();
+        return mutation == null ? System.nanoTime() : mutation.due;
+    }
+
+    /**
+     * @param slot - the slot to check.
+     * @return - true iff a mutation of the slot was submitted and not applied yet.
+     */
+    public boolean hasPendingMutation(int slot) {
+        for (Mutation mutation : pendingMutations)
+            for (int pending : mutation.slots)
+                if (pending == slot) return true;
+        return false;
+    }
+
+    /**
+     * Places cards on the table. The table state and the event log are updated under the write lock, so the log orders
+     * the deal against the players' token events; the user interface is updated after the lock is released (the dealer
+     * is the only writer, so it sees the table changes in order).
+     */
+    private void applyPlaceCards(int[] cards, int[] slots) {
+        long stamp = writeLock();
+        try {
+            synchronized (setIndex) { // so currentSets never caches a half-updated index under the previous version
+                for (int i = 0; i < slots.length; i++) {
+                    cardToSlot[cards[i]] = slots[i];
+                    slotToCard[slots[i]] = cards[i];
+                    addToSetIndex(cards[i], slots[i]);
+                }
+                ++version;
+            }
+            for (int player = 0; player < env.config.players; player++)
+                clearTokenBits(player, slots);
+            env.eventLog.deal(cards, slots);
+        } finally {
+            cardsLock.unlockWrite(stamp);
+        }
+        if (slots.length == 1) env.ui.placeCard(cards[0], slots[0]);
+        else env.ui.placeCards(cards, slots);
+    }
+
+    /**
+     * Removes cards (and the tokens on them) from the table. The table state and the event log are updated under the
+     * write lock; the user interface is updated after it is released.
+     */
+    private void applyRemoveCards(int[] slots) {
+        boolean[] removedTokens = new boolean[env.config.players];
+        long stamp = writeLock();
+        try {
+            synchronized (setIndex) { // so currentSets never caches a half-updated index under the previous version
+                for (int slot : slots) {
+                    int card = slotToCard[slot];
+                    slotToCard[slot] = null;
+                    cardToSlot[card] = null;
+                    removeFromSetIndex(card);
+                    shouldBeRemoved[slot] = false;
+                }
+                ++version;
+            }
+            // note: tokens are placed under the read lock, so every token on these slots was placed (and displayed)
+            // before the write lock was acquired, and is removed here
+            for (int player = 0; player < env.config.players; player++)
+                removedTokens[player] = clearTokenBits(player, slots);
+            env.eventLog.remove(slots);
+            if (slots.length == 1)
                 for (int player = 0; player < env.config.players; player++)
-                    removeToken(player, slot);
+                    if (removedTokens[player]) env.eventLog.token(player, slots[0], false);
+        } finally {
+            cardsLock.unlockWrite(stamp);
+        }
+        if (slots.length == 1) {
+            env.ui.removeCard(slots[0]);
+            for (int player = 0; player < env.config.players; player++)
+                if (removedTokens[player]) env.ui.removeToken(player, slots[0]);
+        } else {
+            env.ui.removeCards(slots);
+            if (slots.length == env.config.tableSize) env.ui.removeTokens();
+            else for (int slot : slots) env.ui.removeTokens(slot);
+        }
+    }
+
+    /**
+     * Adds the sets formed by a card that was just placed on the table to the set index. When pairs of cards determine
+     * their set, only the pairs of the new card with the other cards on the table are checked.
+     *
+     * @param card - the card that was placed.
+     * @param slot - the slot the card was placed in.
+     */
+    private void addToSetIndex(int card, int slot) {
+        synchronized (setIndex) {
+            for (int other = 0; other < env.config.tableSize; other++) {
+                Integer second = slotToCard[other];
+                if (other == slot || second == null) continue;
+                int third = env.util.completeSet(card, second);
+                if (third < 0) { // pairs do not determine sets, search the whole table instead
+                    rebuildSetIndex();
+                    return;
+                }
+                Integer thirdSlot = cardToSlot[third];
+                if (thirdSlot != null && thirdSlot > other) {
+                    int[] set = {card, second, third};
+                    Arrays.sort(set);
+                    setIndex.add(set);
+                }
             }
         }
     }
 
+    /**
+     * Removes the sets containing a card that was just removed from the table from the set index.
+     *
+     * @param card - the card that was removed.
+     */
+    private void removeFromSetIndex(int card) {
+        synchronized (setIndex) {
+            setIndex.removeIf(set -> Arrays.binarySearch(set, card) >= 0);
+        }
+    }
+
+    /**
+     * Recomputes the set index from scratch (used when pairs of cards do not determine their set).
+     */
+    private void rebuildSetIndex() {
+        // note: called by writers holding the cards lock (or from the constructor), so the slots are read directly
+        int[] cards = new int[env.config.tableSize];
+        int count = copyCards(cards);
+        synchronized (setIndex) {
+            setIndex.clear();
+            env.util.findSets(cards, count, Integer.MAX_VALUE, set -> setIndex.add(set.clone()));
+        }
+    }
+
+    /**
+     * @return - a copy of the legal sets among the cards currently on the table (the sorted card ids of each set).
+     */
+    public List<int[]> currentSets() {
+        synchronized (setIndex) {
+            long current = version;
+            if (setsSnapshotVersion != current) {
+                setsSnapshot = Collections.unmodifiableList(new ArrayList<>(setIndex));
+                setsSnapshotVersion = current;
+            }
+            return setsSnapshot;
+        }
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
     public void placeToken(int player, int slot) {
-        synchronized (slotLocks[slot]) {
-            synchronized (playerLocks[player]) {
-                if (slotToCard[slot] != null) {
-                    slotToToken[player][slot] = true;
-                    env.ui.placeToken(player, slot);
-                }
+        long stamp = readLock();
+        try {
+            if (slotToCard[slot] != null && setTokenBit(player, slot, Integer.MAX_VALUE)) {
+                env.eventLog.token(player, slot, true);
+                env.ui.placeToken(player, slot);
             }
+        } finally {
+            cardsLock.unlockRead(stamp);
         }
     }
 
@@ -179,15 +530,11 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
-        synchronized (slotLocks[slot]) {
-            synchronized (playerLocks[player]) {
-                if (slotToToken[player][slot] != null && slotToToken[player][slot]) {
-                    slotToToken[player][slot] = false;
-                    env.ui.removeToken(player, slot);
-                    return true;
-                }
-                return false;
-            }
+        long stamp = readLock();
+        try {
+            return removeTokenLocked(player, slot);
+        } finally {
+            cardsLock.unlockRead(stamp);
         }
     }
 
@@ -195,60 +542,151 @@ public class Table {
      * This method is called when a player presses a slot.
      * If the slot is empty, the player places a token in it.
      * If the slot is occupied by the player's token, the player removes it.
+     * The token is placed or removed, and displayed, under the read lock of the cards, so the dealer's removal of the
+     * card (under the write lock) is ordered after it and also removes the token from the display.
      *
      * @param player - the player that pressed the slot.
      * @param slot   - the slot that was pressed.
+     * @return       - true iff a token was placed or removed.
      */
     public boolean pressSlot(int player, int slot) {
-        synchronized (slotLocks[slot]) {
-            synchronized (playerLocks[player]) {
-                if (removeToken(player, slot))
-                    env.logger.info("Player " + player + " removed token in slot " + slot);
-                else {
-                    if (!hasEnoughTokens(player)) {
-                        placeToken(player, slot);
-                        env.logger.info("Player " + player + " placed token in slot " + slot);
-                    } else return false;
-                }
+        boolean removed;
+        long stamp = readLock();
+        try {
+            removed = removeTokenLocked(player, slot);
+            if (!removed) {
+                if (slotToCard[slot] == null || !setTokenBit(player, slot, Dealer.SET_SIZE))
+                    return false; // there is no card in the slot, or the player already has enough tokens
+                env.eventLog.token(player, slot, true);
+                env.ui.placeToken(player, slot);
+            }
+        } finally {
+            cardsLock.unlockRead(stamp);
+        }
+        env.logger.info("Player " + player + (removed ? " removed" : " placed") + " token in slot " + slot);
+        return true;
+    }
+
+    /**
+     * Removes a token of a player from a grid slot. The caller holds the read lock of the cards.
+     *
+     * @return - true iff a token was removed.
+     */
+    private boolean removeTokenLocked(int player, int slot) {
+        if (!clearTokenBit(player, slot)) return false;
+        env.eventLog.token(player, slot, false);
+        env.ui.removeToken(player, slot);
+        return true;
+    }
+
+    /**
+     * Atomically sets the token bit of a player on a slot, unless the player already has the given number of tokens.
+     *
+     * @return - true iff the bit was set by this call.
+     */
+    private boolean setTokenBit(int player, int slot, int maxTokens) {
+        int index = player * tokenWords + slot / Long.SIZE;
+        long bit = 1L << (slot % Long.SIZE);
+        while (true) {
+            long word = tokens.get(index);
+            if ((word & bit) != 0 || countTokens(player) >= maxTokens)
+                return false;
+            if (tokens.compareAndSet(index, word, word | bit))
+                return true;
+        }
+    }
+
+    /**
+     * Atomically clears the token bit of a player on a slot.
+     *
+     * @return - true iff the bit was cleared by this call.
+     */
+    private boolean clearTokenBit(int player, int slot) {
+        int index = player * tokenWords + slot / Long.SIZE;
+        long bit = 1L << (slot % Long.SIZE);
+        while (true) {
+            long word = tokens.get(index);
+            if ((word & bit) == 0)
+                return false;
+            if (tokens.compareAndSet(index, word, word & ~bit))
                 return true;
+        }
+    }
+
+    /**
+     * Atomically clears the token bits of a player on the given slots (one compare-and-set per mask word).
+     *
+     * @return - true iff any bit was cleared by this call.
+     */
+    private boolean clearTokenBits(int player, int[] slots) {
+        boolean cleared = false;
+        for (int word = 0; word < tokenWords; word++) {
+            long mask = 0;
+            for (int slot : slots)
+                if (slot / Long.SIZE == word) mask |= 1L << (slot % Long.SIZE);
+            if (mask == 0) continue;
+            int index = player * tokenWords + word;
+            while (true) {
+                long bits = tokens.get(index);
+                if ((bits & mask) == 0) break;
+                if (tokens.compareAndSet(index, bits, bits & ~mask)) {
+                    cleared = true;
+                    break;
+                }
             }
         }
+        return cleared;
+    }
+
+    /**
+     * @return - the number of tokens the player currently has on the table.
+     */
+    private int countTokens(int player) {
+        int count = 0;
+        for (int word = 0; word < tokenWords; word++)
+            count += Long.bitCount(tokens.get(player * tokenWords + word));
+        return count;
     }
 
     public boolean hasEnoughTokens(int player) {
-        synchronized (playerLocks[player]) {
-            int tokens = 0;
-            for (Boolean token : slotToToken[player])
-                if (token != null && token)
-                    ++tokens;
-            if (tokens > 3)
-                System.out.println("Player " + player + " has " + tokens + " tokens.");
-            return tokens >= Dealer.SET_SIZE; // In theory, only == would be needed, but to avoid stupid mistakes...
-        }
+        return countTokens(player) >= Dealer.SET_SIZE; // In theory, only == would be needed, but to avoid stupid mistakes...
     }
 
     public int[] getTokens(int player) {
-        synchronized (playerLocks[player]) {
-            int[] tokens = new int[Dealer.SET_SIZE];
-            Arrays.fill(tokens, -1); // to avoid nulls if array is not full
-            int i = 0;
-            for (int slot = 0; slot < env.config.tableSize; slot++)
-                if (slotToToken[player][slot])
-                    tokens[i++] = slot;
-            return tokens;
+        int[] slots = new int[Dealer.SET_SIZE];
+        Arrays.fill(slots, -1); // to avoid nulls if array is not full
+        int i = 0;
+        for (int word = 0; word < tokenWords && i < slots.length; word++)
+            for (long bits = tokens.get(player * tokenWords + word); bits != 0 && i < slots.length; bits &= bits - 1)
+                slots[i++] = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        return slots;
+    }
+
+    /**
+     * Takes a snapshot of a player's claim: the slots the player has tokens on and the cards in them, stamped with the
+     * current time.
+     *
+     * @param player - the claiming player.
+     * @return - the claim.
+     */
+    public Claim claim(int player) {
+        long time = System.nanoTime();
+        int[] slots = getTokens(player);
+        int[] cards = new int[slots.length];
+        long stamp = cardsLock.tryOptimisticRead();
+        copyClaimedCards(slots, cards);
+        if (!cardsLock.validate(stamp)) {
+            stamp = readLock();
+            try { copyClaimedCards(slots, cards); }
+            finally { cardsLock.unlockRead(stamp); }
         }
+        return new Claim(player, slots, cards, time);
     }
 
-    public boolean hasValidSet(int player) {
-        // note: no need to synchronize, because the dealer only removes cards after validating all players in queue
-        synchronized (playerLocks[player]) {
-            int[] tokens = getTokens(player);
-            if (Arrays.stream(tokens).anyMatch(slot -> slot == -1))
-                return false; // not enough tokens
-            if (Arrays.stream(tokens).anyMatch(slot -> shouldBeRemoved[slot] != null && shouldBeRemoved[slot]))
-                return false; // one of the cards was already set to be removed
-            int[] cards = Arrays.stream(tokens).map(slot -> slotToCard[slot]).toArray();
-            return env.util.testSet(cards);
+    private void copyClaimedCards(int[] slots, int[] cards) {
+        for (int i = 0; i < slots.length; i++) {
+            Integer card = slots[i] < 0 ? null : slotToCard[slots[i]];
+            cards[i] = card == null ? -1 : card;
         }
     }
 
@@ -257,23 +695,51 @@ public class Table {
         shouldBeRemoved[slot] = true;
     }
 
+    /**
+     * Submits the removal of the cards marked to be removed (that were not submitted yet), as a single mutation.
+     */
     public void removeShouldBeRemoved() {
         // note: only dealer calls this method, therefore no need to synchronize
+        int[] slots = new int[env.config.tableSize];
+        int count = 0;
         for (int slot = 0; slot < env.config.tableSize; slot++)
-            if (shouldBeRemoved[slot] != null && shouldBeRemoved[slot])
-                removeCard(slot);
+            if (shouldBeRemoved[slot] != null && shouldBeRemoved[slot] && !hasPendingMutation(slot))
+                slots[count++] = slot;
+        if (count > 0) submitMutation(new Mutation(null, Arrays.copyOf(slots, count)));
     }
 
     public List<Integer> getCards() {
-        synchronized (this) {
-            List<Integer> cards = new ArrayList<>();
-            for (Integer card : slotToCard) {
-                if (card != null) {
-                    cards.add(card);
-                }
-            }
-            return cards;
+        int[] cards = new int[env.config.tableSize];
+        int count = getCards(cards);
+        List<Integer> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            list.add(cards[i]);
+        return list;
+    }
+
+    /**
+     * Copies the cards currently on the table into the given array (in slot order), without allocating.
+     *
+     * @param cards - an array of at least config.tableSize entries.
+     * @return - the number of cards copied.
+     */
+    public int getCards(int[] cards) {
+        long stamp = cardsLock.tryOptimisticRead();
+        int count = copyCards(cards);
+        if (!cardsLock.validate(stamp)) {
+            stamp = readLock();
+            try { count = copyCards(cards); }
+            finally { cardsLock.unlockRead(stamp); }
         }
+        return count;
+    }
+
+    private int copyCards(int[] cards) {
+        int count = 0;
+        for (Integer card : slotToCard)
+            if (card != null)
+                cards[count++] = card;
+        return count;
     }
 
 }
@@ -0,0 +1,35 @@
+package bguspl.set.ex;
+
+/**
+ * The dealer's verdict on a claim, and the time until which the claiming player is frozen because of it.
+ */
+public class Verdict {
+
+    public enum Kind {
+        /**
+         * The claim is a legal set, the player gets a point.
+         */
+        POINT,
+        /**
+         * The claim is not a legal set, the player is penalized.
+         */
+        PENALTY,
+        /**
+         * The claimed cards changed before the claim was verified (e.g. an earlier claim took some of them), the claim
+         * is dropped without a penalty.
+         */
+        STALE
+    }
+
+    public final Kind kind;
+
+    /**
+     * The time (System.nanoTime()) until which the player is frozen.
+     */
+    public final long freezeUntil;
+
+    public Verdict(Kind kind, long freezeUntil) {
+        this.kind = kind;
+        this.freezeUntil = freezeUntil;
+    }
+}
@@ -0,0 +1,129 @@
+package bguspl.set.ex;
+
+import bguspl.set.KeyPressOverflow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyPressBufferTest {
+
+    private static final int PRESSES = 200_000;
+
+    @Test
+    void dropNewestKeepsTheOldestPresses() {
+        KeyPressBuffer buffer = new KeyPressBuffer(3, KeyPressOverflow.DROP_NEWEST);
+        for (int slot = 0; slot < 3; slot++)
+            assertTrue(buffer.offer(slot));
+        assertFalse(buffer.offer(3));
+        assertFalse(buffer.offer(4));
+        assertPolls(buffer, 0, 1, 2);
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestPresses() {
+        KeyPressBuffer buffer = new KeyPressBuffer(3, KeyPressOverflow.DROP_OLDEST);
+        for (int slot = 0; slot < 5; slot++)
+            assertTrue(buffer.offer(slot));
+        assertPolls(buffer, 2, 3, 4);
+    }
+
+    @Test
+    void coalesceCancelsAPendingPressOfTheSameSlot() {
+        KeyPressBuffer buffer = new KeyPressBuffer(3, KeyPressOverflow.COALESCE);
+        for (int slot = 0; slot < 3; slot++)
+            assertTrue(buffer.offer(slot));
+        assertFalse(buffer.offer(1)); // cancels the pending press of slot 1
+        assertFalse(buffer.offer(5)); // no pending press of slot 5, so it is dropped
+        assertPolls(buffer, 0, 2);
+    }
+
+    @Test
+    void theBufferIsReusedAfterItWasDrained() {
+        KeyPressBuffer buffer = new KeyPressBuffer(2, KeyPressOverflow.DROP_OLDEST);
+        for (int round = 0; round < 10; round++) {
+            assertTrue(buffer.offer(round));
+            assertTrue(buffer.offer(round + 1));
+            assertTrue(buffer.offer(round + 2));
+            assertPolls(buffer, round + 1, round + 2);
+        }
+    }
+
+    @Test
+    void takeReturnsNoneOnceClosedAndDrained() {
+        KeyPressBuffer buffer = new KeyPressBuffer(3, KeyPressOverflow.DROP_NEWEST);
+        buffer.offer(7);
+        buffer.close();
+        assertEquals(7, buffer.take());
+        assertEquals(KeyPressBuffer.NONE, buffer.take());
+    }
+
+    @Test
+    void dropNewestDeliversExactlyTheAcceptedPressesInOrder() throws InterruptedException {
+        assertDeliversAcceptedPresses(KeyPressOverflow.DROP_NEWEST);
+    }
+
+    @Test
+    void coalesceOfDistinctSlotsDeliversExactlyTheAcceptedPressesInOrder() throws InterruptedException {
+        assertDeliversAcceptedPresses(KeyPressOverflow.COALESCE);
+    }
+
+    @Test
+    void dropOldestDeliversTheNewestPressInOrder() throws InterruptedException {
+        KeyPressBuffer buffer = new KeyPressBuffer(3, KeyPressOverflow.DROP_OLDEST);
+        List<Integer> taken = consume(buffer, () -> {
+            for (int slot = 0; slot < PRESSES; slot++)
+                assertTrue(buffer.offer(slot));
+        });
+        assertIncreasing(taken);
+        assertEquals(PRESSES - 1, taken.get(taken.size() - 1)); // the newest press is never dropped
+    }
+
+    /**
+     * Offers distinct presses on one thread while another takes them: a press is taken iff it was accepted, and the
+     * presses are taken in the order they were offered.
+     */
+    private static void assertDeliversAcceptedPresses(KeyPressOverflow overflow) throws InterruptedException {
+        KeyPressBuffer buffer = new KeyPressBuffer(3, overflow);
+        List<Integer> accepted = new ArrayList<>();
+        List<Integer> taken = consume(buffer, () -> {
+            for (int slot = 0; slot < PRESSES; slot++)
+                if (buffer.offer(slot)) accepted.add(slot);
+        });
+        assertIncreasing(taken);
+        assertEquals(accepted, taken);
+    }
+
+    /**
+     * Runs the producer on this thread, then closes the buffer.
+     *
+     * @return - the presses the consumer thread took, in order.
+     */
+    private static List<Integer> consume(KeyPressBuffer buffer, Runnable producer) throws InterruptedException {
+        List<Integer> taken = new ArrayList<>();
+        Thread consumer = new Thread(() -> {
+            for (int slot = buffer.take(); slot != KeyPressBuffer.NONE; slot = buffer.take())
+                taken.add(slot);
+        });
+        consumer.start();
+        producer.run();
+        buffer.close();
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+        assertFalse(consumer.isAlive(), "the consumer did not finish");
+        return taken;
+    }
+
+    private static void assertPolls(KeyPressBuffer buffer, int... slots) {
+        for (int slot : slots)
+            assertEquals(slot, buffer.poll());
+        assertEquals(KeyPressBuffer.NONE, buffer.poll());
+    }
+
+    private static void assertIncreasing(List<Integer> slots) {
+        for (int i = 1; i < slots.size(); i++)
+            assertTrue(slots.get(i - 1) < slots.get(i), "press " + slots.get(i) + " was taken after " + slots.get(i - 1));
+    }
+}